@@ -0,0 +1,12 @@
+package uk.camsw.rxjava.intro;
+
+// Rough and ready timings for the benchmark style examples.  Not JMH, so always look at more than one run
+public class Benchmarks {
+
+    public static void time(String name, long operations, Runnable task) {
+        long start = System.nanoTime();
+        task.run();
+        long elapsed = System.nanoTime() - start;
+        System.out.println(String.format("%-30s %,12d us (%.2f ns/op)", name, elapsed / 1000, (double) elapsed / operations));
+    }
+}
@@ -4,11 +4,17 @@ import com.google.common.util.concurrent.Uninterruptibles;
 import org.junit.Before;
 import org.junit.Test;
 import rx.Observable;
+import rx.Subscriber;
 import rx.Subscription;
+import rx.observers.TestSubscriber;
+import uk.camsw.rxjava.intro.fusion.Fused;
 
 import java.time.Duration;
 import java.util.concurrent.TimeUnit;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static uk.camsw.rxjava.intro.Benchmarks.time;
+
 public class Example1_SimpleOperationsTest {
 
     private Producer producer;
@@ -155,4 +161,103 @@ public class Example1_SimpleOperationsTest {
         Uninterruptibles.sleepUninterruptibly(3, TimeUnit.SECONDS);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void map_fused() {
+        // Each operator in the map example above is its own subscriber.  For long chains of simple, synchronous
+        // stages that overhead adds up, so we can choose to have them fused into a single subscriber instead
+        Fused.from(producer.asObservable())
+                .map(n -> "value: " + n)
+                .map(s -> s.toUpperCase())
+                .asObservable()
+                .subscribe(s -> {
+                    System.out.println("s = " + s);
+                });
+
+        Uninterruptibles.sleepUninterruptibly(3, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void map_fusedBehavesTheSame() {
+        // Same results, same backpressure - filtered items are replaced by requesting another from upstream.  Adjacent
+        // stages of the same kind (the two maps here) are run as one, but still apply in order
+        TestSubscriber<String> unfused = new TestSubscriber<>(5);
+        TestSubscriber<String> fused = new TestSubscriber<>(5);
+
+        Observable.range(0, 100)
+                .filter(n -> n % 3 == 0)
+                .map(n -> "value: " + n)
+                .map(s -> s + "!")
+                .doOnNext(s -> s.length())
+                .map(s -> s.toUpperCase())
+                .subscribe(unfused);
+
+        Fused.from(Observable.range(0, 100))
+                .filter(n -> n % 3 == 0)
+                .map(n -> "value: " + n)
+                .map(s -> s + "!")
+                .doOnNext(s -> s.length())
+                .map(s -> s.toUpperCase())
+                .asObservable()
+                .subscribe(fused);
+
+        assertThat(fused.getOnNextEvents()).hasSize(5).isEqualTo(unfused.getOnNextEvents());
+        fused.requestMore(Long.MAX_VALUE);
+        unfused.requestMore(Long.MAX_VALUE);
+        assertThat(fused.getOnNextEvents()).hasSize(34).isEqualTo(unfused.getOnNextEvents());
+        fused.assertCompleted();
+    }
+
+    @Test
+    public void map_fusedBenchmark() {
+        // Not JMH, run it on its own and ignore the first couple of rounds while the JIT warms up.  The chains are
+        // runs of two maps then two filters, and every version - hand written included - boxes its values and
+        // delivers them to the same subscriber.  Fusion only pays once there is something to fuse: with a single stage
+        // the fused chain is the slower, as it adds its own stage dispatch to the one subscriber it saves
+        int events = 2_000_000;
+        for (int run = 0; run < 5; run++) {
+            for (int stages : new int[]{1, 5, 20}) {
+                Observable<Integer> unfused = Observable.range(0, events);
+                Fused<Integer> fused = Fused.from(Observable.range(0, events));
+                for (int i = 0; i < stages; i++) {
+                    unfused = i % 4 < 2 ? unfused.map(n -> n + 1) : unfused.filter(n -> n >= 0);
+                    fused = i % 4 < 2 ? fused.map(n -> n + 1) : fused.filter(n -> n >= 0);
+                }
+                Observable<Integer> unfusedChain = unfused;
+                Observable<Integer> fusedChain = fused.asObservable();
+                time("unfused, " + stages + " stages", events, () -> unfusedChain.subscribe(new Sink()));
+                time("fused, " + stages + " stages", events, () -> fusedChain.subscribe(new Sink()));
+                time("hand written, " + stages + " stages", events, () -> {
+                    Sink sink = new Sink();
+                    for (int n = 0; n < events; n++) {
+                        Integer value = n;
+                        boolean passed = true;
+                        for (int i = 0; i < stages && passed; i++) {
+                            if (i % 4 < 2) value = value + 1;
+                            else passed = value >= 0;
+                        }
+                        if (passed) sink.onNext(value);
+                    }
+                    sink.onCompleted();
+                });
+            }
+        }
+    }
+
+    private static class Sink extends Subscriber<Integer> {
+        long sum;
+
+        @Override
+        public void onNext(Integer n) {
+            sum += n;
+        }
+
+        @Override
+        public void onError(Throwable e) {
+        }
+
+        @Override
+        public void onCompleted() {
+            assertThat(sum).isPositive();
+        }
+    }
+}
@@ -4,10 +4,21 @@ import com.google.common.collect.Lists;
 import com.google.common.util.concurrent.Uninterruptibles;
 import org.junit.Before;
 import org.junit.Test;
+import rx.observers.TestSubscriber;
+import rx.schedulers.Schedulers;
+import rx.schedulers.TestScheduler;
+import rx.schedulers.Timestamped;
+import rx.subjects.PublishSubject;
+import uk.camsw.rxjava.intro.window.Aggregate;
+import uk.camsw.rxjava.intro.window.EventTimeWindow;
+import uk.camsw.rxjava.intro.window.EventTimeWindows;
+import uk.camsw.rxjava.intro.window.Windows;
 
 import java.time.Duration;
 import java.util.concurrent.TimeUnit;
 
+import static org.assertj.core.api.Assertions.assertThat;
+
 public class Example2_TemporalOperationsTest {
 
     private Producer producer;
@@ -67,4 +78,130 @@ public class Example2_TemporalOperationsTest {
         // Cool, we've just conflated away prices that are ticking too quickly for us to handle!
         Uninterruptibles.sleepUninterruptibly(3, TimeUnit.SECONDS);
     }
+
+    @Test
+    public void tumblingWindow() {
+        // buffer followed by a map to a sum/average works, but it materializes a list for every window only to
+        // throw it away again.  The window transformers aggregate each event as it arrives instead
+        producer.asObservable()
+                .compose(Windows.tumbling(1, TimeUnit.SECONDS, Schedulers.computation()))
+                .subscribe(aggregate -> {
+                    System.out.println("aggregate = " + aggregate);
+                });
+
+        Uninterruptibles.sleepUninterruptibly(3, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void slidingWindow() {
+        // A rolling view over the last 3 seconds, updated every second.  Because windows are closed by the scheduler
+        // we can drive them with virtual time rather than sleeping
+        TestScheduler scheduler = new TestScheduler();
+        PublishSubject<Integer> source = PublishSubject.create();
+        TestSubscriber<Aggregate> subscriber = new TestSubscriber<>();
+
+        source.compose(Windows.sliding(3, 1, TimeUnit.SECONDS, scheduler))
+                .subscribe(subscriber);
+
+        source.onNext(5);
+        scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+        source.onNext(1);
+        source.onNext(9);
+        scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+        scheduler.advanceTimeBy(1, TimeUnit.SECONDS);           // The 5 has now slid out of the window
+
+        assertThat(subscriber.getOnNextEvents()).hasSize(3);
+        Aggregate all = subscriber.getOnNextEvents().get(1);
+        assertThat(all.count()).isEqualTo(3);
+        assertThat(all.min()).isEqualTo(1);
+        assertThat(all.max()).isEqualTo(9);
+
+        Aggregate last = subscriber.getOnNextEvents().get(2);
+        assertThat(last.count()).isEqualTo(2);
+        assertThat(last.sum()).isEqualTo(10);
+        assertThat(last.average()).isEqualTo(5);
+    }
+
+    @Test
+    public void sessionWindow() {
+        // Sessions have no fixed length, they close once the stream has been quiet for longer than the gap
+        TestScheduler scheduler = new TestScheduler();
+        PublishSubject<Integer> source = PublishSubject.create();
+        TestSubscriber<Aggregate> subscriber = new TestSubscriber<>();
+
+        source.compose(Windows.session(500, TimeUnit.MILLISECONDS, scheduler))
+                .subscribe(subscriber);
+
+        source.onNext(1);
+        scheduler.advanceTimeBy(400, TimeUnit.MILLISECONDS);
+        source.onNext(2);
+        scheduler.advanceTimeBy(400, TimeUnit.MILLISECONDS);
+        source.onNext(3);
+        scheduler.advanceTimeBy(1, TimeUnit.SECONDS);           // Quiet for long enough, session 1 closes
+        source.onNext(10);
+        source.onCompleted();
+        scheduler.advanceTimeBy(1, TimeUnit.SECONDS);           // The final session went out on completion, not again
+
+        assertThat(subscriber.getOnNextEvents()).hasSize(2);
+        assertThat(subscriber.getOnNextEvents().get(0).sum()).isEqualTo(6);
+        assertThat(subscriber.getOnNextEvents().get(1).sum()).isEqualTo(10);
+        subscriber.assertCompleted();
+    }
+
+    @Test
+    public void eventTime() {
+        // All of the above window on processing time - when the event happens to reach the operator.  If the producer
+        // is held up (GC, a busy io pool) events land in the wrong window.  Producers can stamp events as they are
+        // created, so we can window on that 'event time' instead
+        EventTimeWindows<Integer> windows = EventTimeWindows.<Integer>tumbling(1, TimeUnit.SECONDS)
+                .withMaxOutOfOrderness(200, TimeUnit.MILLISECONDS)
+                .withLateEvents(late -> late.subscribe(event -> {
+                    System.out.println("late = " + event);
+                }))
+                .build();
+
+        producer.asTimestampedObservable()
+                .compose(windows)
+                .subscribe(window -> {
+                    System.out.println("window = " + window);
+                });
+
+        Uninterruptibles.sleepUninterruptibly(3, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void eventTime_lateEvents() {
+        // Each window fires once the watermark (highest event time seen, less the out-of-orderness we are prepared
+        // to put up with) passes its end.  Stragglers within the allowed lateness re-fire the window as an update,
+        // anything later than that is sent to the late events side output
+        TestSubscriber<Timestamped<Integer>> late = new TestSubscriber<>();
+        EventTimeWindows<Integer> windows = EventTimeWindows.<Integer>tumbling(1, TimeUnit.SECONDS)
+                .withMaxOutOfOrderness(200, TimeUnit.MILLISECONDS)
+                .withAllowedLateness(1, TimeUnit.SECONDS)
+                .withLateEvents(lateEvents -> lateEvents.subscribe(late))
+                .build();
+        PublishSubject<Timestamped<Integer>> source = PublishSubject.create();
+        TestSubscriber<EventTimeWindow> subscriber = new TestSubscriber<>();
+
+        source.compose(windows).subscribe(subscriber);
+
+        source.onNext(new Timestamped<>(100, 1));
+        source.onNext(new Timestamped<>(1100, 2));
+        source.onNext(new Timestamped<>(900, 3));              // Out of order, but within 200ms - still on time
+        source.onNext(new Timestamped<>(1300, 4));             // Watermark passes 1000, [0, 1000) fires
+        source.onNext(new Timestamped<>(500, 5));              // Late, but allowed - [0, 1000) fires again
+        source.onNext(new Timestamped<>(2300, 6));             // Watermark passes 2000, [1000, 2000) fires, [0, 1000) is gone
+        source.onNext(new Timestamped<>(700, 7));              // Too late
+        source.onCompleted();
+
+        assertThat(subscriber.getOnNextEvents()).hasSize(4);
+        assertThat(subscriber.getOnNextEvents().get(0).aggregate().sum()).isEqualTo(4);
+        assertThat(subscriber.getOnNextEvents().get(1).isUpdate()).isTrue();
+        assertThat(subscriber.getOnNextEvents().get(1).aggregate().sum()).isEqualTo(9);
+        assertThat(subscriber.getOnNextEvents().get(2).start()).isEqualTo(1000);
+        assertThat(subscriber.getOnNextEvents().get(2).aggregate().sum()).isEqualTo(6);
+        assertThat(subscriber.getOnNextEvents().get(3).start()).isEqualTo(2000);
+        assertThat(late.getOnNextEvents()).extracting("value").containsExactly(7);
+        late.assertCompleted();
+    }
 }
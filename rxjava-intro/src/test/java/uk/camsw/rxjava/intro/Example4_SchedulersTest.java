@@ -1,14 +1,29 @@
 package uk.camsw.rxjava.intro;
 
 import com.google.common.util.concurrent.Uninterruptibles;
+import org.HdrHistogram.Histogram;
 import org.junit.Before;
 import org.junit.Test;
+import rx.Observable;
+import rx.Scheduler;
 import rx.Subscription;
+import rx.observers.TestSubscriber;
 import rx.schedulers.Schedulers;
+import rx.subjects.PublishSubject;
+import uk.camsw.rxjava.intro.lanes.LaneScheduler;
+import uk.camsw.rxjava.intro.time.CoarseClock;
+import uk.camsw.rxjava.intro.time.TimeSource;
 
 import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static uk.camsw.rxjava.intro.Benchmarks.time;
 
 public class Example4_SchedulersTest {
 
@@ -101,4 +116,186 @@ public class Example4_SchedulersTest {
         // So, observables and schedulers both return subscriptions,
         // ... might be quite good for managing resources if they could somehow be combined?
     }
+
+    @Test
+    public void coarseClock() {
+        // Every temporal operator, and every producer tick, asks its scheduler what time it is.  At high rates those
+        // clock reads add up.  If we can live with (say) millisecond accuracy, a coarse clock updated by a single
+        // background ticker can stand in - it plugs in by wrapping the scheduler we would have used anyway
+        CoarseClock clock = CoarseClock.builder()
+                .withResolution(Duration.ofMillis(1))
+                .build();
+        Scheduler scheduler = clock.scheduler(Schedulers.computation());
+
+        Producer.builder()
+                .withFrequency(Duration.ofMillis(100))
+                .withScheduler(clock.scheduler(Schedulers.io()))
+                .build()
+                .asTimestampedObservable()
+                .sample(1, TimeUnit.SECONDS, scheduler)
+                .subscribe(n -> {
+                    System.out.println("n = " + n);
+                });
+
+        Uninterruptibles.sleepUninterruptibly(3, TimeUnit.SECONDS);
+
+        // How far behind it lags depends on when the ticker last got a core, but it never runs ahead of the real
+        // thing (give or take the millisecond we lose reading the two), and it keeps moving
+        long coarse = clock.millis();
+        assertThat(coarse).isLessThanOrEqualTo(System.currentTimeMillis() + 1);
+        Uninterruptibles.sleepUninterruptibly(100, TimeUnit.MILLISECONDS);
+        assertThat(clock.millis()).isGreaterThan(coarse);
+        clock.unsubscribe();
+
+        // Stopping the ticker doesn't stop the clock, or anything scheduled periodically against it would stretch
+        long stopped = scheduler.now();
+        Uninterruptibles.sleepUninterruptibly(100, TimeUnit.MILLISECONDS);
+        assertThat(scheduler.now()).isGreaterThanOrEqualTo(stopped + 100);
+    }
+
+    @Test
+    public void coarseClock_benchmark() {
+        // Not JMH, but enough to see the difference.  Run it on its own
+        int iterations = 20_000_000;
+        CoarseClock clock = CoarseClock.builder().withResolution(Duration.ofMillis(1)).build();
+
+        for (int run = 0; run < 3; run++) {                    // The first run or two are just warming up
+            time("System.nanoTime", iterations, () -> read(iterations, () -> System.nanoTime()));
+            time("System.currentTimeMillis", iterations, () -> read(iterations, () -> System.currentTimeMillis()));
+            time("TimeSource.system().micros", iterations, () -> read(iterations, () -> TimeSource.system().micros()));
+            time("CoarseClock.micros", iterations, () -> read(iterations, () -> clock.micros()));
+
+            Scheduler system = Schedulers.immediate();
+            Scheduler coarse = clock.scheduler(Schedulers.immediate());
+            int events = iterations / 10;
+            time("timestamp(system scheduler)", events, () -> Observable.range(0, events).timestamp(system).subscribe());
+            time("timestamp(coarse scheduler)", events, () -> Observable.range(0, events).timestamp(coarse).subscribe());
+        }
+        clock.unsubscribe();
+    }
+
+    @Test
+    public void priorityLanes() {
+        // Back to observeOn.  With every stream merged onto one FIFO event loop, an important event (a leader change,
+        // say, or the trigger of a takeUntil) waits behind every bulk event that got there first.  Once the loop is
+        // saturated that's a long wait.  A lane scheduler gives each stream its own queue on the one event loop, and
+        // always runs the most important work first
+        LaneScheduler lanes = LaneScheduler.builder()
+                .withLanes(2)
+                .build();
+
+        Observable<String> control = Producer.builder()
+                .withFrequency(Duration.ofMillis(10))
+                .build()
+                .asObservable()
+                .map(n -> "leader change " + n);
+        Observable<String> bulk = Producer.builder()
+                .withFrequency(Duration.ofNanos(20_000))
+                .build()
+                .asObservable()
+                .map(n -> "tick " + n);
+
+        // Each stream is put on its lane as it's merged.  The bulk events take 40us each to handle, arriving every
+        // 20us, so the loop can't keep up and the bulk lane's queue just keeps growing
+        Subscription subscription = control.compose(lanes.observeOn(0))
+                .mergeWith(bulk.compose(lanes.observeOn(1)))
+                .subscribe(event -> {
+                    if (event.startsWith("tick")) {
+                        long until = System.nanoTime() + TimeUnit.MICROSECONDS.toNanos(40);
+                        while (System.nanoTime() < until) {
+                            // Busy
+                        }
+                    }
+                });
+
+        Uninterruptibles.sleepUninterruptibly(2, TimeUnit.SECONDS);
+        subscription.unsubscribe();
+        lanes.unsubscribe();
+
+        // Time spent queued, per lane.  Control events wait for at most the one bulk event in hand, so they should
+        // come in at tens of microseconds.  That needs a core each for the loop and the two producers though - short
+        // of cores, the OS keeps the loop waiting for milliseconds at a time, and all we can say is that control
+        // still beats bulk
+        Histogram controlLatencies = lanes.latencies(0);
+        Histogram bulkLatencies = lanes.latencies(1);
+        System.out.println(String.format("control p50=%,dns p99=%,dns max=%,dns", controlLatencies.getValueAtPercentile(50), controlLatencies.getValueAtPercentile(99), controlLatencies.getMaxValue()));
+        System.out.println(String.format("bulk    p50=%,dns p99=%,dns max=%,dns", bulkLatencies.getValueAtPercentile(50), bulkLatencies.getValueAtPercentile(99), bulkLatencies.getMaxValue()));
+        assertThat(controlLatencies.getValueAtPercentile(99)).isLessThan(bulkLatencies.getValueAtPercentile(99));
+        if (Runtime.getRuntime().availableProcessors() >= 4) {
+            assertThat(controlLatencies.getValueAtPercentile(99)).isLessThan(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+    }
+
+    @Test
+    public void priorityLanes_stopped() {
+        // Once the loop has stopped nothing will run, so work is no longer accepted rather than left queued forever
+        LaneScheduler lanes = LaneScheduler.builder().withLanes(2).build();
+        Scheduler.Worker worker = lanes.lane(0).createWorker();
+        lanes.unsubscribe();
+
+        AtomicBoolean ran = new AtomicBoolean();
+        assertThat(worker.schedule(() -> ran.set(true)).isUnsubscribed()).isTrue();
+        assertThat(worker.schedule(() -> ran.set(true), 1, TimeUnit.MILLISECONDS).isUnsubscribed()).isTrue();
+        Uninterruptibles.sleepUninterruptibly(50, TimeUnit.MILLISECONDS);
+        assertThat(ran.get()).isFalse();
+    }
+
+    @Test
+    public void priorityLanes_strict() {
+        // With strict priority, anything waiting on lane 0 goes before anything waiting on lane 1
+        LaneScheduler lanes = LaneScheduler.builder().withLanes(2).build();
+        List<String> events = laneOrder(lanes, 4);
+
+        assertThat(events).containsExactly("c", "c", "c", "c", "b", "b", "b", "b");
+        lanes.unsubscribe();
+    }
+
+    @Test
+    public void priorityLanes_weighted() {
+        // Strict priority can starve the bulk lane altogether.  With weights, each lane gets up to its weight in
+        // events per round - here two control events for every bulk one, for as long as there are control events
+        LaneScheduler lanes = LaneScheduler.builder().withWeights(2, 1).build();
+        List<String> events = laneOrder(lanes, 4);
+
+        assertThat(events).containsExactly("c", "c", "b", "c", "c", "b", "b", "b");
+        lanes.unsubscribe();
+    }
+
+    // Holds up the event loop while the given number of control (c) and bulk (b) events are queued on lanes 0 and 1,
+    // then returns the order in which they were delivered
+    private static List<String> laneOrder(LaneScheduler lanes, int count) {
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        lanes.lane(1).createWorker().schedule(() -> {
+            blocked.countDown();
+            Uninterruptibles.awaitUninterruptibly(release);
+        });
+        Uninterruptibles.awaitUninterruptibly(blocked);
+
+        PublishSubject<String> control = PublishSubject.create();
+        PublishSubject<String> bulk = PublishSubject.create();
+        TestSubscriber<String> subscriber = new TestSubscriber<>();
+        control.compose(lanes.observeOn(0))
+                .mergeWith(bulk.compose(lanes.<String>observeOn(1)))
+                .subscribe(subscriber);
+
+        for (int i = 0; i < count; i++) {
+            bulk.onNext("b");
+            control.onNext("c");
+        }
+        bulk.onCompleted();
+        control.onCompleted();
+        release.countDown();
+
+        subscriber.awaitTerminalEvent(5, TimeUnit.SECONDS);
+        return subscriber.getOnNextEvents();
+    }
+
+    private static long read(int iterations, LongSupplier clock) {
+        long sink = 0;
+        for (int i = 0; i < iterations; i++) {
+            sink += clock.getAsLong();
+        }
+        return sink;
+    }
 }
@@ -2,6 +2,8 @@ package uk.camsw.rxjava.intro;
 
 import org.junit.Test;
 import rx.schedulers.Schedulers;
+import uk.camsw.rxjava.intro.perf.PerformanceScenario;
+import uk.camsw.rxjava.intro.perf.SubscriberPerformance;
 import uk.camsw.rxjava.test.dsl.TestScenario;
 import uk.camsw.rxjava.test.dsl.scenario.SingleSourceScenario;
 
@@ -10,6 +12,7 @@ import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 public class Example6_TestingTest {
 
@@ -109,4 +112,75 @@ public class Example6_TestingTest {
                 .renderedStream().isEqualTo("[a]-[b]");
     }
 
+    @Test
+    public void performance() {
+        PerformanceScenario<Integer, Integer> testScenario = PerformanceScenario.create();
+
+        // Performance expectations can be written in much the same style.  The scenario warms the stream up, then
+        // pushes the measured events through it and records what the subscriber saw.  A synchronous stream never has
+        // more than the one event in flight, and all the map should allocate is the boxed result
+        testScenario
+                .given()
+                .theStreamUnderTest(source -> source.map(n -> n + 1))
+                .theEventCount(100_000)
+                .theWarmupCount(10_000)
+
+                .when()
+                .theScenarioRuns()
+
+                .then()
+                .theSubscriber()
+                .eventCount().isEqualTo(100_000)
+                .throughput().isAtLeast(100_000)
+                .latencyP99().isBelow(Duration.ofMillis(1))
+                .allocationsPerEvent().isAtMost(64)
+                .maxQueueDepth().isEqualTo(0);
+    }
+
+    @Test
+    public void performance_async() {
+        PerformanceScenario<Integer, Integer> testScenario = PerformanceScenario.create();
+
+        // Once there's a thread hop the source can get ahead of the subscriber and events queue up.  The scenario's
+        // source doesn't honour backpressure, so as with any hot source we buffer ahead of observeOn
+        testScenario
+                .given()
+                .theStreamUnderTest(source -> source.onBackpressureBuffer().observeOn(Schedulers.computation()))
+                .theEventCount(10_000)
+                .theWarmupCount(1_000)
+                .asyncTimeoutOf(Duration.ofSeconds(5))
+
+                .when()
+                .theScenarioRuns()
+
+                .then()
+                .theSubscriber()
+                .eventCount().isEqualTo(10_000)
+                .throughput().isAtLeast(10_000)
+                .latencyP99().isBelow(Duration.ofSeconds(1));
+    }
+
+    @Test
+    public void performance_filtering() {
+        PerformanceScenario<Integer, Integer> testScenario = PerformanceScenario.create();
+
+        // Latency and queue depth pair the nth event out with the nth event in.  That means nothing once a stream
+        // drops events, so asking for either fails rather than quietly reporting nonsense.  Throughput still applies
+        SubscriberPerformance<Integer> subscriber = testScenario
+                .given()
+                .theStreamUnderTest(source -> source.filter(n -> n % 2 == 0))
+                .theEventCount(10_000)
+                .theWarmupCount(1_000)
+
+                .when()
+                .theScenarioRuns()
+
+                .then()
+                .theSubscriber()
+                .eventCount().isEqualTo(5_000)
+                .throughput().isAtLeast(10_000);
+
+        assertThatThrownBy(() -> subscriber.latencyP99()).hasMessageContaining("one event for each event in");
+        assertThatThrownBy(() -> subscriber.maxQueueDepth()).hasMessageContaining("one event for each event in");
+    }
 }
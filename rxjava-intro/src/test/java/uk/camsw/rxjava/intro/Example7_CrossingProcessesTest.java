@@ -0,0 +1,326 @@
+package uk.camsw.rxjava.intro;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import rx.Observable;
+import rx.Subscription;
+import rx.observers.TestSubscriber;
+import rx.subjects.PublishSubject;
+import uk.camsw.rxjava.intro.transport.Codec;
+import uk.camsw.rxjava.intro.transport.LappedReaderException;
+import uk.camsw.rxjava.intro.transport.LappedReaderPolicy;
+import uk.camsw.rxjava.intro.transport.RemoteObservable;
+import uk.camsw.rxjava.intro.transport.SharedMemoryEcho;
+import uk.camsw.rxjava.intro.transport.SharedMemoryObservable;
+import uk.camsw.rxjava.intro.transport.SharedMemoryPublisher;
+import uk.camsw.rxjava.intro.transport.WaitStrategy;
+import uk.camsw.rxjava.intro.transport.WireServer;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class Example7_CrossingProcessesTest {
+
+    private Producer producer;
+    private WireServer<?> server;
+    private Path directory;
+
+    @Before
+    public void before() throws IOException {
+        // Memory-mapped files are best kept off the disk altogether, if the OS will let us
+        Path shm = Paths.get("/dev/shm");
+        directory = Files.isDirectory(shm) ? Files.createTempDirectory(shm, "rx") : Files.createTempDirectory("rx");
+        producer = Producer.builder()
+                .withFrequency(Duration.ofMillis(100))
+                .startFrom(0)
+                .build();
+    }
+
+    @After
+    public void after() throws IOException {
+        if (server != null) server.unsubscribe();
+        for (File file : directory.toFile().listFiles()) {
+            Files.delete(file.toPath());
+        }
+        Files.delete(directory);
+    }
+
+    @Test
+    public void overTheWire() {
+        // Everything so far has lived in a single JVM.  Here we publish the producer on a (loopback) socket, and
+        // subscribe to it as if it were any other observable.  In real life the two halves would be in different
+        // processes, the only thing they share is the codec
+        WireServer<Integer> server = WireServer.<Integer>builder()
+                .withSource(producer.asObservable())
+                .withCodec(Codec.integers())
+                .build();
+        this.server = server;
+
+        RemoteObservable.connect(server.localAddress(), Codec.integers())
+                .map(n -> "remote: " + n)
+                .subscribe(
+                        s -> {
+                            System.out.println("s = " + s);
+                        },
+                        e -> {
+                            System.err.println("An error: " + e);       // We'll see this when the server goes away
+                        }
+                );
+
+        // Note the producer doesn't start until the remote side subscribes - it's still a cold observable
+        Uninterruptibles.sleepUninterruptibly(3, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void overTheWire_backpressure() {
+        // The subscriber's request(n) travels over the wire as credit, so the publisher never sends more than we've
+        // asked for - no matter how fast the source is
+        WireServer<Integer> server = WireServer.<Integer>builder()
+                .withSource(Observable.range(0, 100_000))
+                .withCodec(Codec.integers())
+                .build();
+        this.server = server;
+
+        TestSubscriber<Integer> subscriber = new TestSubscriber<>(10);
+        RemoteObservable.connect(server.localAddress(), Codec.integers()).subscribe(subscriber);
+
+        Uninterruptibles.sleepUninterruptibly(500, TimeUnit.MILLISECONDS);
+        assertThat(subscriber.getOnNextEvents()).containsExactly(0, 1, 2, 3, 4, 5, 6, 7, 8, 9);
+
+        subscriber.requestMore(Long.MAX_VALUE - 10);
+        subscriber.awaitTerminalEvent(5, TimeUnit.SECONDS);
+        subscriber.assertCompleted();
+        assertThat(subscriber.getOnNextEvents()).hasSize(100_000);
+        assertThat(subscriber.getOnNextEvents().get(99_999)).isEqualTo(99_999);
+    }
+
+    @Test
+    public void overTheWire_slowConsumer() {
+        // An unbounded subscriber doesn't mean unbounded credit.  It's granted a window at a time and topped up as
+        // events are delivered, so a slow consumer holds a fast source back to its own pace, with at most a window's
+        // worth of events buffered in between
+        AtomicInteger emitted = new AtomicInteger();
+        WireServer<Integer> server = WireServer.<Integer>builder()
+                .withSource(Observable.range(0, 20_000_000).doOnNext(n -> emitted.incrementAndGet()))
+                .withCodec(Codec.integers())
+                .build();
+        this.server = server;
+
+        AtomicInteger received = new AtomicInteger();
+        Subscription subscription = RemoteObservable.connect(server.localAddress(), Codec.integers())
+                .subscribe(n -> {
+                    Uninterruptibles.sleepUninterruptibly(1, TimeUnit.MILLISECONDS);
+                    received.incrementAndGet();
+                });
+
+        Uninterruptibles.sleepUninterruptibly(500, TimeUnit.MILLISECONDS);
+        assertThat(received.get()).isGreaterThan(0);
+        assertThat(emitted.get() - received.get()).isLessThanOrEqualTo(256);
+        subscription.unsubscribe();
+    }
+
+    @Test
+    public void overTheWire_errors() {
+        // Errors cross the wire too, although only their description survives the journey
+        WireServer<Integer> server = WireServer.<Integer>builder()
+                .withSource(Observable.<Integer>error(new IllegalStateException("boom")).startWith(1))
+                .withCodec(Codec.integers())
+                .build();
+        this.server = server;
+
+        TestSubscriber<Integer> subscriber = new TestSubscriber<>();
+        RemoteObservable.connect(server.localAddress(), Codec.integers()).subscribe(subscriber);
+
+        subscriber.awaitTerminalEvent(5, TimeUnit.SECONDS);
+        subscriber.assertValues(1);
+        assertThat(subscriber.getOnErrorEvents().get(0)).hasMessageContaining("boom");
+    }
+
+    @Test
+    public void overTheWire_encodingErrors() {
+        // A value the codec can't encode fails that subscriber's stream, but the server carries on for everyone else
+        Codec<Integer> integers = Codec.integers();
+        Codec<Integer> fussy = new Codec<Integer>() {
+            @Override
+            public int maxEncodedSize() {
+                return integers.maxEncodedSize();
+            }
+
+            @Override
+            public void encode(Integer value, ByteBuffer buffer) {
+                if (value == 3) throw new IllegalArgumentException("Can't encode 3");
+                integers.encode(value, buffer);
+            }
+
+            @Override
+            public Integer decode(ByteBuffer buffer) {
+                return integers.decode(buffer);
+            }
+        };
+        WireServer<Integer> server = WireServer.<Integer>builder()
+                .withSource(Observable.range(0, 5))
+                .withCodec(fussy)
+                .build();
+        this.server = server;
+
+        for (int connection = 0; connection < 2; connection++) {
+            TestSubscriber<Integer> subscriber = new TestSubscriber<>();
+            RemoteObservable.connect(server.localAddress(), fussy).subscribe(subscriber);
+
+            subscriber.awaitTerminalEvent(5, TimeUnit.SECONDS);
+            subscriber.assertValues(0, 1, 2);
+            assertThat(subscriber.getOnErrorEvents().get(0)).hasMessageContaining("Can't encode 3");
+        }
+    }
+
+    @Test
+    public void sharedMemory() {
+        // When both processes live on the same box even a loopback socket is a long way round.  Here the publisher
+        // writes into a memory-mapped file, and readers (in this process or any other) poll it
+        Path ring = directory.resolve("producer");
+        SharedMemoryPublisher<Integer> publisher = SharedMemoryPublisher.<Integer>builder()
+                .withSource(producer.asObservable())
+                .withCodec(Codec.integers())
+                .withPath(ring)
+                .build();
+
+        SharedMemoryObservable.open(ring, Codec.integers())
+                .subscribe(n -> {
+                    System.out.println("n = " + n);
+                });
+
+        Uninterruptibles.sleepUninterruptibly(3, TimeUnit.SECONDS);
+        publisher.unsubscribe();
+    }
+
+    @Test
+    public void sharedMemory_lappedReader() {
+        // The writer never waits for readers.  A reader that falls a whole ring behind has missed events, and
+        // has to decide what to do about it - fail, or skip to the oldest event that is still there
+        Path ring = directory.resolve("lapped");
+        PublishSubject<Integer> source = PublishSubject.create();
+        SharedMemoryPublisher.<Integer>builder()
+                .withSource(source)
+                .withCodec(Codec.integers())
+                .withPath(ring)
+                .withCapacity(16)
+                .build();
+
+        TestSubscriber<Integer> failing = new TestSubscriber<>(0);
+        TestSubscriber<Integer> dropping = new TestSubscriber<>(0);
+        AtomicLong dropped = new AtomicLong();
+        SharedMemoryObservable.open(ring, Codec.integers(), WaitStrategy.YIELD, LappedReaderPolicy.ERROR).subscribe(failing);
+        SharedMemoryObservable.open(ring, Codec.integers(), WaitStrategy.YIELD, LappedReaderPolicy.DROP, dropped::addAndGet)
+                .subscribe(dropping);
+
+        Observable.range(0, 100).subscribe(source);             // 100 events (and a completion) into 16 slots
+
+        failing.requestMore(Long.MAX_VALUE);
+        dropping.requestMore(Long.MAX_VALUE);
+        failing.awaitTerminalEvent(5, TimeUnit.SECONDS);
+        dropping.awaitTerminalEvent(5, TimeUnit.SECONDS);
+
+        failing.assertError(LappedReaderException.class);
+        dropping.assertCompleted();
+        assertThat(dropping.getOnNextEvents()).hasSize(14).endsWith(98, 99);
+        assertThat(dropped.get()).isEqualTo(100 - 14);              // Every missed event is accounted for
+    }
+
+    @Test
+    public void sharedMemory_restartedPublisher() {
+        // A publisher that restarts builds a new ring and renames it into place, rather than truncating the file
+        // readers have mapped.  Existing readers are left with the old ring, new readers get the new one
+        Path ring = directory.resolve("restarted");
+        PublishSubject<Integer> first = PublishSubject.create();
+        SharedMemoryPublisher.<Integer>builder().withSource(first).withCodec(Codec.integers()).withPath(ring).build();
+        TestSubscriber<Integer> before = new TestSubscriber<>();
+        SharedMemoryObservable.open(ring, Codec.integers()).subscribe(before);
+        first.onNext(1);
+
+        PublishSubject<Integer> second = PublishSubject.create();
+        SharedMemoryPublisher.<Integer>builder().withSource(second).withCodec(Codec.integers()).withPath(ring).build();
+        TestSubscriber<Integer> after = new TestSubscriber<>();
+        SharedMemoryObservable.open(ring, Codec.integers()).subscribe(after);
+        second.onNext(2);
+        second.onCompleted();
+
+        after.awaitTerminalEvent(5, TimeUnit.SECONDS);
+        after.assertValues(2);
+        Uninterruptibles.sleepUninterruptibly(100, TimeUnit.MILLISECONDS);
+        before.assertValues(1);
+        before.assertNoTerminalEvent();
+        before.unsubscribe();
+    }
+
+    @Test
+    public void sharedMemory_latencyBetweenJvms() throws Exception {
+        // Ping-pong with a second JVM that echoes everything back.  Each ping carries its send time, so half the
+        // round trip is our one-way latency.  Both sides busy spin if there are enough cores to go round (otherwise
+        // they would just be fighting each other for the CPU) - run this on its own
+        int pings = 200_000;
+        WaitStrategy waitStrategy = Runtime.getRuntime().availableProcessors() >= 4 ? WaitStrategy.BUSY_SPIN : WaitStrategy.YIELD;
+        Path ping = directory.resolve("ping");
+        Path pong = directory.resolve("pong");
+        PublishSubject<Long> source = PublishSubject.create();
+        SharedMemoryPublisher<Long> publisher = SharedMemoryPublisher.<Long>builder()
+                .withSource(source)
+                .withCodec(Codec.longs())
+                .withPath(ping)
+                .build();
+
+        Process echo = new ProcessBuilder(
+                Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", System.getProperty("java.class.path"),
+                SharedMemoryEcho.class.getName(), ping.toString(), pong.toString(), waitStrategy.name())
+                .redirectErrorStream(true)
+                .start();
+        try {
+            BufferedReader output = new BufferedReader(new InputStreamReader(echo.getInputStream()));
+            assertThat(output.readLine()).isEqualTo("READY");
+
+            long[] latencies = new long[pings];
+            AtomicInteger received = new AtomicInteger();
+            SharedMemoryObservable.open(pong, Codec.longs(), waitStrategy, LappedReaderPolicy.ERROR)
+                    .subscribe(sentAt -> {
+                        latencies[received.get()] = (System.nanoTime() - sentAt) / 2;
+                        received.incrementAndGet();
+                    });
+
+            for (int i = 0; i < pings; i++) {
+                source.onNext(System.nanoTime());
+                while (received.get() <= i) {
+                    if (waitStrategy == WaitStrategy.YIELD) Thread.yield();
+                }
+            }
+            source.onCompleted();
+
+            // Throw away the first half as warm up
+            long[] measured = Arrays.copyOfRange(latencies, pings / 2, pings);
+            Arrays.sort(measured);
+            System.out.println(String.format("one-way latency (ns): p50=%d p99=%d p99.9=%d max=%d",
+                    measured[measured.length / 2],
+                    measured[(int) (measured.length * 0.99)],
+                    measured[(int) (measured.length * 0.999)],
+                    measured[measured.length - 1]));
+            assertThat(echo.waitFor(5, TimeUnit.SECONDS)).isTrue();
+        } finally {
+            echo.destroy();
+            publisher.unsubscribe();
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package uk.camsw.rxjava.intro;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+import org.junit.Before;
+import org.junit.Test;
+import rx.observers.TestSubscriber;
+import rx.schedulers.Schedulers;
+import rx.schedulers.TestScheduler;
+import uk.camsw.rxjava.intro.load.Intended;
+import uk.camsw.rxjava.intro.load.LatencyHarness;
+import uk.camsw.rxjava.intro.load.LatencyReport;
+import uk.camsw.rxjava.intro.time.TimeSource;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class Example8_MeasuringLatencyTest {
+
+    private Producer producer;
+
+    @Before
+    public void before() {
+        producer = Producer.builder()
+                .withFrequency(Duration.ofMillis(10))
+                .withClock(TimeSource.system())
+                .startFrom(0)
+                .build();
+    }
+
+    @Test
+    public void openLoop() {
+        // Our producer normally ticks with schedulePeriodically.  If the consumer stalls, so does the producer, and
+        // the events that should have been sent during the stall are either bunched up or never sent at all.
+        // Measure latency from when events were actually sent and the stall all but disappears from the numbers.
+        // An open loop producer keeps to its schedule, and stamps each event with when it *should* have been sent
+        TestSubscriber<Intended<Integer>> subscriber = new TestSubscriber<>();
+        List<Long> latencies = new ArrayList<>();
+        producer.asOpenLoopObservable()
+                .doOnNext(event -> latencies.add(TimeUnit.MICROSECONDS.toNanos(TimeSource.system().micros()) - event.intendedNanos()))
+                .doOnNext(event -> {
+                    if (event.value() == 5) Uninterruptibles.sleepUninterruptibly(200, TimeUnit.MILLISECONDS);
+                })
+                .take(40)
+                .subscribe(subscriber);
+
+        subscriber.awaitTerminalEvent(5, TimeUnit.SECONDS);
+        List<Intended<Integer>> events = subscriber.getOnNextEvents();
+        assertThat(events).hasSize(40);
+
+        // The schedule has no gaps, despite the stall...
+        for (int i = 1; i < events.size(); i++) {
+            assertThat(events.get(i).intendedNanos() - events.get(i - 1).intendedNanos())
+                    .isEqualTo(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        // ... and the events that should have gone out during it are charged for the wait.  Had they been emitted
+        // periodically they would simply have been sent late, appearing to have gone through quickly
+        assertThat(latencies.get(6)).isGreaterThan(TimeUnit.MILLISECONDS.toNanos(150));
+        assertThat(latencies.get(39)).isLessThan(TimeUnit.MILLISECONDS.toNanos(150));
+    }
+
+    @Test
+    public void openLoop_virtualTime() {
+        // Left to its worker's clock the schedule runs in virtual time, so it can be tested like any other producer
+        TestScheduler scheduler = new TestScheduler();
+        TestSubscriber<Intended<Integer>> subscriber = new TestSubscriber<>();
+        Producer.builder()
+                .withFrequency(Duration.ofMillis(10))
+                .withScheduler(scheduler)
+                .build()
+                .asOpenLoopObservable()
+                .subscribe(subscriber);
+
+        scheduler.advanceTimeBy(95, TimeUnit.MILLISECONDS);
+        List<Intended<Integer>> events = subscriber.getOnNextEvents();
+        assertThat(events).hasSize(10);
+        assertThat(events.get(9).intendedNanos()).isEqualTo(TimeUnit.MILLISECONDS.toNanos(90));
+        subscriber.unsubscribe();
+
+        // A rate is kept to exactly, even one that doesn't divide a second into whole nanoseconds
+        TestSubscriber<Intended<Integer>> thirds = new TestSubscriber<>();
+        Producer.builder()
+                .withRate(3)
+                .withScheduler(scheduler)
+                .build()
+                .asOpenLoopObservable()
+                .subscribe(thirds);
+
+        long start = TimeUnit.MILLISECONDS.toNanos(scheduler.now());
+        scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+        assertThat(thirds.getOnNextEvents()).extracting(event -> event.intendedNanos() - start)
+                .containsExactly(0L, 333_333_333L, 666_666_666L, 1_000_000_000L);
+        thirds.unsubscribe();
+    }
+
+    @Test
+    public void latency_observeOn() {
+        // The harness drives a pipeline with an open loop producer and records latency (from intended send time to
+        // arrival at the subscriber) in an HDR histogram
+        LatencyHarness harness = LatencyHarness.builder()
+                .withPipeline(source -> source.observeOn(Schedulers.from(Executors.newSingleThreadExecutor())))
+                .withWarmup(Duration.ofMillis(500))
+                .withDuration(Duration.ofSeconds(1))
+                .build();
+
+        LatencyReport report = harness.run(1000);
+        System.out.println(report);
+
+        assertThat(report.latencies().getTotalCount()).isGreaterThan(900);
+        assertThat(report.percentile(50)).isPositive();
+    }
+
+    @Test
+    public void saturation_sweep() {
+        // Keep stepping the rate up until the pipeline can't keep up (or can't keep up within a p99 of 10ms).  The
+        // pipeline here burns ~20us per event on a single thread, so it should give up somewhere before 50k/s.
+        // Note the producer ignores backpressure (it's open loop after all) so we buffer ahead of observeOn, otherwise
+        // we'd be measuring how quickly it fails with a MissingBackpressureException
+        LatencyHarness harness = LatencyHarness.builder()
+                .withPipeline(source -> source
+                        .onBackpressureBuffer()
+                        .observeOn(Schedulers.from(Executors.newSingleThreadExecutor()))
+                        .map(event -> event.map(n -> {
+                            long until = System.nanoTime() + TimeUnit.MICROSECONDS.toNanos(20);
+                            while (System.nanoTime() < until) {
+                                // Busy
+                            }
+                            return n;
+                        })))
+                .withWarmup(Duration.ofMillis(500))
+                .withDuration(Duration.ofSeconds(1))
+                .withP99Limit(Duration.ofMillis(10))
+                .build();
+
+        List<LatencyReport> reports = harness.sweep(1_000, 5_000, 10_000, 25_000, 50_000, 100_000);
+
+        LatencyReport last = reports.get(reports.size() - 1);
+        assertThat(last.isSaturated(TimeUnit.MILLISECONDS.toNanos(10))).isTrue();
+        System.out.println("Saturated at " + last.targetRate() + "/s");
+    }
+}
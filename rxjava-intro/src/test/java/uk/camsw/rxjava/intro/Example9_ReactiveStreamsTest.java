@@ -0,0 +1,379 @@
+package uk.camsw.rxjava.intro;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import rx.Observable;
+import rx.exceptions.MissingBackpressureException;
+import rx.observers.TestSubscriber;
+import uk.camsw.rxjava.intro.reactive.ReactiveStreams;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static uk.camsw.rxjava.intro.Benchmarks.time;
+
+public class Example9_ReactiveStreamsTest {
+
+    private Producer producer;
+
+    @Before
+    public void before() {
+        producer = Producer.builder()
+                .withFrequency(Duration.ofMillis(10))
+                .startFrom(0)
+                .build();
+    }
+
+    @Test
+    public void toPublisher() {
+        // Anything that speaks Reactive Streams can subscribe to an observable through a Publisher.  Nothing is
+        // emitted until it's asked for, and then only as much as was asked for (rule 1.1)
+        Publisher<Integer> publisher = ReactiveStreams.toPublisher(Observable.range(0, 10));
+        RecordingSubscriber<Integer> subscriber = new RecordingSubscriber<>();
+        publisher.subscribe(subscriber);
+
+        assertThat(subscriber.subscription).isNotNull();
+        assertThat(subscriber.events).isEmpty();
+
+        subscriber.subscription.request(3);
+        assertThat(subscriber.events).containsExactly(0, 1, 2);
+        assertThat(subscriber.completed).isFalse();
+
+        subscriber.subscription.request(7);
+        assertThat(subscriber.events).hasSize(10);
+        assertThat(subscriber.completed).isTrue();
+    }
+
+    @Test
+    public void toPublisher_producer() {
+        // Our producer takes no notice of backpressure, so as with any hot source we have to decide what to do with
+        // what the subscriber hasn't asked for.  Here we drop it, so we ask for everything as soon as we subscribe
+        Publisher<Integer> publisher = ReactiveStreams.toPublisher(producer.asObservable().onBackpressureDrop().take(5));
+        RecordingSubscriber<Integer> subscriber = new RecordingSubscriber<>(Long.MAX_VALUE);
+        publisher.subscribe(subscriber);
+
+        subscriber.awaitTermination();
+        assertThat(subscriber.events).containsExactly(0, 1, 2, 3, 4);
+    }
+
+    @Test
+    public void toObservable() {
+        // And going the other way, an Rx subscriber's requests are passed on to the publisher as they are made
+        Publisher<Integer> publisher = ReactiveStreams.toPublisher(Observable.range(0, 10));
+        TestSubscriber<Integer> subscriber = new TestSubscriber<>(2);
+        ReactiveStreams.toObservable(publisher).subscribe(subscriber);
+
+        subscriber.assertValues(0, 1);
+        subscriber.requestMore(8);
+        subscriber.assertValueCount(10);
+        subscriber.assertCompleted();
+    }
+
+    @Test
+    public void toObservable_unsubscribe() {
+        // Unsubscribing cancels the Reactive Streams subscription
+        AtomicBoolean cancelled = new AtomicBoolean();
+        Publisher<Integer> publisher = subscriber -> subscriber.onSubscribe(new Subscription() {
+            @Override
+            public void request(long n) {
+                subscriber.onNext(1);
+            }
+
+            @Override
+            public void cancel() {
+                cancelled.set(true);
+            }
+        });
+
+        ReactiveStreams.toObservable(publisher).take(1).subscribe();
+        assertThat(cancelled.get()).isTrue();
+    }
+
+    @Test
+    public void toObservable_noCancelOnTermination() {
+        // Rule 2.3: a subscriber mustn't call back into the subscription from onComplete or onError.  Rx unsubscribes
+        // as the stream terminates, but by then there's nothing to cancel
+        AtomicBoolean cancelled = new AtomicBoolean();
+        Publisher<Integer> publisher = subscriber -> subscriber.onSubscribe(new Subscription() {
+            @Override
+            public void request(long n) {
+                subscriber.onNext(1);
+                subscriber.onComplete();
+            }
+
+            @Override
+            public void cancel() {
+                cancelled.set(true);
+            }
+        });
+
+        TestSubscriber<Integer> subscriber = new TestSubscriber<>();
+        ReactiveStreams.toObservable(publisher).subscribe(subscriber);
+        subscriber.assertValues(1);
+        subscriber.assertCompleted();
+        assertThat(cancelled.get()).isFalse();
+    }
+
+    @Test
+    public void compliance_demand() {
+        // Rule 1.1: never more than was asked for.  Observable.just ignores backpressure and emits as soon as it's
+        // subscribed to, so with nothing requested the stream fails rather than deliver an event nobody asked for
+        RecordingSubscriber<Integer> unrequested = new RecordingSubscriber<>();
+        ReactiveStreams.toPublisher(Observable.just(7)).subscribe(unrequested);
+
+        assertThat(unrequested.events).isEmpty();
+        assertThat(unrequested.error).isInstanceOf(MissingBackpressureException.class);
+
+        // Asked for in onSubscribe, before the observable is subscribed to, it's delivered as normal
+        RecordingSubscriber<Integer> requested = new RecordingSubscriber<>(1);
+        ReactiveStreams.toPublisher(Observable.just(7)).subscribe(requested);
+
+        assertThat(requested.events).containsExactly(7);
+        assertThat(requested.completed).isTrue();
+    }
+
+    @Test
+    public void compliance_nonPositiveRequest() {
+        // Rule 3.9: a request of zero or less is an error, signalled to the subscriber
+        RecordingSubscriber<Integer> subscriber = new RecordingSubscriber<>();
+        ReactiveStreams.toPublisher(Observable.range(0, 10)).subscribe(subscriber);
+        subscriber.subscription.request(0);
+
+        assertThat(subscriber.events).isEmpty();
+        assertThat(subscriber.error).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void compliance_nonPositiveRequestWhileEmitting() {
+        // Rule 1.3: signals are serial, so a bad request made while an onNext is in progress is reported once that
+        // onNext has returned, and nothing follows it
+        List<String> signals = new ArrayList<>();
+        RecordingSubscriber<Integer> subscriber = new RecordingSubscriber<Integer>(Long.MAX_VALUE) {
+            @Override
+            public void onNext(Integer n) {
+                signals.add("onNext start");
+                subscription.request(-1);
+                signals.add("onNext end");
+            }
+
+            @Override
+            public void onError(Throwable e) {
+                signals.add("onError");
+                super.onError(e);
+            }
+        };
+        ReactiveStreams.toPublisher(Observable.range(0, 10)).subscribe(subscriber);
+
+        assertThat(signals).containsExactly("onNext start", "onNext end", "onError");
+        assertThat(subscriber.error).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void compliance_cancel() {
+        // Rules 3.5 to 3.7: cancel stops the stream (unsubscribing upstream), and anything after it is a no-op
+        AtomicBoolean unsubscribed = new AtomicBoolean();
+        RecordingSubscriber<Integer> subscriber = new RecordingSubscriber<>();
+        ReactiveStreams.toPublisher(Observable.range(0, 10).doOnUnsubscribe(() -> unsubscribed.set(true)))
+                .subscribe(subscriber);
+
+        subscriber.subscription.request(2);
+        subscriber.subscription.cancel();
+        subscriber.subscription.cancel();
+        subscriber.subscription.request(2);
+        subscriber.subscription.request(-1);
+
+        assertThat(unsubscribed.get()).isTrue();
+        assertThat(subscriber.events).containsExactly(0, 1);
+        assertThat(subscriber.error).isNull();
+        assertThat(subscriber.completed).isFalse();
+    }
+
+    @Test
+    public void compliance_requestFromOnNext() {
+        // Rule 3.3: requesting from within onNext mustn't recurse without bound.  Rx producers already loop rather
+        // than recurse, and as we hand requests straight to them we get that for free
+        RecordingSubscriber<Integer> subscriber = new RecordingSubscriber<Integer>() {
+            @Override
+            public void onNext(Integer n) {
+                super.onNext(n);
+                subscription.request(1);
+            }
+        };
+        ReactiveStreams.toPublisher(Observable.range(0, 100_000)).subscribe(subscriber);
+        subscriber.subscription.request(1);
+
+        assertThat(subscriber.events).hasSize(100_000);
+        assertThat(subscriber.completed).isTrue();
+    }
+
+    @Test
+    public void compliance_unboundedDemand() {
+        // Rule 3.17: demand may add up to more than Long.MAX_VALUE, which is treated as unbounded
+        RecordingSubscriber<Integer> subscriber = new RecordingSubscriber<>();
+        ReactiveStreams.toPublisher(Observable.range(0, 10)).subscribe(subscriber);
+        subscriber.subscription.request(Long.MAX_VALUE - 1);
+        subscriber.subscription.request(Long.MAX_VALUE - 1);
+
+        assertThat(subscriber.events).hasSize(10);
+        assertThat(subscriber.completed).isTrue();
+    }
+
+    @Test
+    public void compliance_nulls() {
+        // Rules 1.9 and 2.13: nulls aren't allowed, for subscribers or for events.  Rx is happy to emit nulls, so the
+        // stream is cancelled with an error instead
+        RecordingSubscriber<String> subscriber = new RecordingSubscriber<>();
+        ReactiveStreams.toPublisher(Observable.just("a", null, "b")).subscribe(subscriber);
+        subscriber.subscription.request(3);
+
+        assertThat(subscriber.events).containsExactly("a");
+        assertThat(subscriber.error).isInstanceOf(NullPointerException.class);
+
+        try {
+            ReactiveStreams.toPublisher(Observable.just(1)).subscribe(null);
+        } catch (NullPointerException expected) {
+            return;
+        }
+        throw new AssertionError("Expected a NullPointerException");
+    }
+
+    @Test
+    public void benchmark() {
+        // The naive bridge subscribes to the observable unbounded and queues whatever the Reactive Streams subscriber
+        // hasn't yet asked for.  It works, but it's an extra hop for every event, and as the queue has no limit
+        // backpressure stops at the bridge.  Handing the requests straight through avoids both
+        int events = 5_000_000;
+        for (int run = 0; run < 3; run++) {
+            time("naive bridge", events, () -> drain(naivePublisher(Observable.range(0, events)), events));
+            time("request bridge", events, () -> drain(ReactiveStreams.toPublisher(Observable.range(0, events)), events));
+        }
+    }
+
+    // Requests in batches of 128, as a typical Reactive Streams subscriber would
+    private static void drain(Publisher<Integer> publisher, int events) {
+        AtomicLong received = new AtomicLong();
+        publisher.subscribe(new Subscriber<Integer>() {
+            private Subscription subscription;
+
+            @Override
+            public void onSubscribe(Subscription subscription) {
+                this.subscription = subscription;
+                subscription.request(128);
+            }
+
+            @Override
+            public void onNext(Integer n) {
+                if (received.incrementAndGet() % 128 == 0) subscription.request(128);
+            }
+
+            @Override
+            public void onError(Throwable e) {
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        });
+        assertThat(received.get()).isEqualTo(events);
+    }
+
+    private static <T> Publisher<T> naivePublisher(Observable<T> observable) {
+        return subscriber -> {
+            Queue<T> queue = new ConcurrentLinkedQueue<>();
+            AtomicLong requested = new AtomicLong();
+            AtomicInteger draining = new AtomicInteger();
+            AtomicBoolean done = new AtomicBoolean();
+            Runnable drain = () -> {
+                if (draining.getAndIncrement() != 0) return;
+                do {
+                    while (requested.get() > 0 && !queue.isEmpty()) {
+                        requested.decrementAndGet();
+                        subscriber.onNext(queue.poll());
+                    }
+                    if (done.get() && queue.isEmpty()) {
+                        subscriber.onComplete();
+                        return;
+                    }
+                } while (draining.decrementAndGet() != 0);
+            };
+            subscriber.onSubscribe(new Subscription() {
+                @Override
+                public void request(long n) {
+                    requested.addAndGet(n);
+                    drain.run();
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            observable.subscribe(t -> {
+                queue.offer(t);
+                drain.run();
+            }, subscriber::onError, () -> {
+                done.set(true);
+                drain.run();
+            });
+        };
+    }
+
+    private static class RecordingSubscriber<T> implements Subscriber<T> {
+        final List<T> events = new ArrayList<>();
+        final CountDownLatch terminated = new CountDownLatch(1);
+        final long initialRequest;
+        Subscription subscription;
+        Throwable error;
+        boolean completed;
+
+        RecordingSubscriber() {
+            this(0);
+        }
+
+        RecordingSubscriber(long initialRequest) {
+            this.initialRequest = initialRequest;
+        }
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            this.subscription = subscription;
+            if (initialRequest > 0) subscription.request(initialRequest);
+        }
+
+        @Override
+        public void onNext(T t) {
+            events.add(t);
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            error = e;
+            terminated.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+            terminated.countDown();
+        }
+
+        void awaitTermination() {
+            try {
+                assertThat(terminated.await(5, TimeUnit.SECONDS)).isTrue();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
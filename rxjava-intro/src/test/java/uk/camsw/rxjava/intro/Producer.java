@@ -1,8 +1,13 @@
 package uk.camsw.rxjava.intro;
 
 import rx.Observable;
+import rx.Scheduler;
+import rx.functions.Action0;
 import rx.schedulers.Schedulers;
+import rx.schedulers.Timestamped;
 import rx.subscriptions.Subscriptions;
+import uk.camsw.rxjava.intro.load.Intended;
+import uk.camsw.rxjava.intro.time.TimeSource;
 
 import java.time.Duration;
 import java.util.concurrent.TimeUnit;
@@ -10,44 +15,128 @@ import java.util.concurrent.atomic.AtomicInteger;
 
 public class Producer {
 
-    private final Duration frequency;
+    // Events go out perInterval at a time every intervalNanos - a frequency is one per interval, a rate so many per
+    // second.  Keeping the two apart means a rate that doesn't divide a second into whole nanoseconds isn't rounded
+    private final long intervalNanos;
+    private final long perInterval;
     private final int startFrom;
     private final Duration startsAfter;
+    private final Scheduler scheduler;
+    private final TimeSource clock;
 
     public Producer(Builder builder) {
-        this.frequency = builder.frequency;
+        this.intervalNanos = builder.intervalNanos;
+        this.perInterval = builder.perInterval;
         this.startFrom = builder.startFrom;
         this.startsAfter = builder.startsAfter;
+        this.scheduler = builder.scheduler;
+        this.clock = builder.clock;
     }
 
     public Observable<Integer> asObservable() {
+        return asTimestampedObservable().map(Timestamped::getValue);
+    }
+
+    // Each value is stamped with the time it was produced (its 'event time'), rather than the time it happens to
+    // reach an operator downstream.  The stamp is the tick's scheduled time, so a tick that runs late (GC, a busy
+    // io pool) still carries the time it was due
+    public Observable<Timestamped<Integer>> asTimestampedObservable() {
         AtomicInteger sequence = new AtomicInteger(startFrom);
         return Observable.create(observer -> {
             System.out.println("Starting producer, starting from: " + startFrom);
             observer.add(Subscriptions.create(() -> System.out.println("Stopping producer")));
+            Scheduler.Worker worker = scheduler.createWorker();
+            observer.add(worker);
+            long origin = worker.now();
+            long[] n = {0};
             observer.add(
-                    Schedulers.io().createWorker().schedulePeriodically(() -> {
-                        observer.onNext(sequence.getAndIncrement());
-                    }, startsAfter.toNanos(), frequency.toNanos(), TimeUnit.NANOSECONDS)
+                    worker.schedulePeriodically(() -> {
+                        long due = origin + TimeUnit.NANOSECONDS.toMillis(dueAt(startsAfter.toNanos(), n[0]++));
+                        observer.onNext(new Timestamped<>(due, sequence.getAndIncrement()));
+                    }, startsAfter.toNanos(), intervalNanos / perInterval, TimeUnit.NANOSECONDS)
             );
         });
     }
 
+    // Open loop: value n is due at start + n * frequency whether or not the consumer has kept up.  Periodic scheduling
+    // quietly pushes ticks back (or drops them) when a consumer stalls, which hides the stall from any latency we
+    // measure.  Here late values are sent as soon as possible and still carry the time they should have gone out.
+    // Time is read from the worker, so a TestScheduler runs it in virtual time.  A worker only counts milliseconds
+    // though, so anything quicker wants a finer clock (withClock) - and to measure against the same one
+    public Observable<Intended<Integer>> asOpenLoopObservable() {
+        return Observable.create(observer -> {
+            System.out.println("Starting open loop producer, starting from: " + startFrom);
+            observer.add(Subscriptions.create(() -> System.out.println("Stopping producer")));
+            Scheduler.Worker worker = scheduler.createWorker();
+            observer.add(worker);
+            long start = nanos(worker) + startsAfter.toNanos();
+            worker.schedule(new Action0() {
+                long n;
+
+                @Override
+                public void call() {
+                    // Catch up on everything that is due, in one go, then sleep until the next one
+                    long now = nanos(worker);
+                    while (!observer.isUnsubscribed() && dueAt(start, n) <= now) {
+                        observer.onNext(new Intended<>(dueAt(start, n), startFrom + (int) n));
+                        n++;
+                    }
+                    if (!observer.isUnsubscribed()) {
+                        // The clock reads in whole ticks (ms or us), so wait for the first reading that shows it's due
+                        long tick = resolution();
+                        long wakeAt = (dueAt(start, n) + tick - 1) / tick * tick;
+                        worker.schedule(this, wakeAt - nanos(worker), TimeUnit.NANOSECONDS);
+                    }
+                }
+            }, startsAfter.toNanos(), TimeUnit.NANOSECONDS);
+        });
+    }
+
+    private long nanos(Scheduler.Worker worker) {
+        return clock == null ? TimeUnit.MILLISECONDS.toNanos(worker.now()) : TimeUnit.MICROSECONDS.toNanos(clock.micros());
+    }
+
+    private long resolution() {
+        return clock == null ? TimeUnit.MILLISECONDS.toNanos(1) : TimeUnit.MICROSECONDS.toNanos(1);
+    }
+
+    // Whole intervals first, then the part of one, so a long run can't overflow
+    private long dueAt(long start, long n) {
+        return start + n / perInterval * intervalNanos + n % perInterval * intervalNanos / perInterval;
+    }
+
     public static Builder builder() {
         return new Builder();
     }
 
     public static class Builder {
-        Duration frequency = Duration.ofSeconds(1);
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1);
+        long perInterval = 1;
         int startFrom = 0;
         Duration startsAfter = Duration.ofSeconds(0);
+        Scheduler scheduler = Schedulers.io();
+        TimeSource clock;
 
         public Producer build() {
             return new Producer(this);
         }
 
         public Builder withFrequency(Duration frequency) {
-            this.frequency = frequency;
+            if (frequency.isNegative() || frequency.isZero()) {
+                throw new IllegalArgumentException("Frequency must be positive: " + frequency);
+            }
+            this.intervalNanos = frequency.toNanos();
+            this.perInterval = 1;
+            return this;
+        }
+
+        // As many events a second, spread evenly.  Any more than one a nanosecond can't be scheduled
+        public Builder withRate(long eventsPerSecond) {
+            if (eventsPerSecond < 1 || eventsPerSecond > TimeUnit.SECONDS.toNanos(1)) {
+                throw new IllegalArgumentException("Rate must be between 1 and 1e9 events a second: " + eventsPerSecond);
+            }
+            this.intervalNanos = TimeUnit.SECONDS.toNanos(1);
+            this.perInterval = eventsPerSecond;
             return this;
         }
 
@@ -60,6 +149,17 @@ public class Producer {
             this.startsAfter = startsAfter;
             return this;
         }
+
+        public Builder withScheduler(Scheduler scheduler) {
+            this.scheduler = scheduler;
+            return this;
+        }
+
+        // Where the open loop producer reads the time, in place of the worker's (millisecond) clock
+        public Builder withClock(TimeSource clock) {
+            this.clock = clock;
+            return this;
+        }
     }
 
 }
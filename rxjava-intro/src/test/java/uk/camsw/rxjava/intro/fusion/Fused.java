@@ -0,0 +1,102 @@
+package uk.camsw.rxjava.intro.fusion;
+
+import rx.Observable;
+import rx.Subscriber;
+import rx.exceptions.Exceptions;
+import rx.exceptions.OnErrorThrowable;
+import rx.functions.Action1;
+import rx.functions.Func1;
+
+import java.util.Arrays;
+
+// Every map/filter/doOnNext on an Observable is its own Subscriber, with its own virtual onNext, unsubscribed checks
+// and request bookkeeping.  Fused collects a linear chain of those synchronous stages while the pipeline is being
+// assembled, and asObservable() runs the whole chain inside a single subscriber:
+//
+//   Fused.from(source)
+//        .map(n -> "value: " + n)
+//        .map(s -> s.toUpperCase())
+//        .asObservable()
+//
+// Fused is immutable, each stage returns a new instance so partially built chains can be shared
+public final class Fused<T> {
+
+    static final int MAP = 0;
+    static final int FILTER = 1;
+    static final int DO_ON_NEXT = 2;
+
+    private final Observable<?> source;
+    private final int[] kinds;
+    private final Object[] functions;
+
+    private Fused(Observable<?> source, int[] kinds, Object[] functions) {
+        this.source = source;
+        this.kinds = kinds;
+        this.functions = functions;
+    }
+
+    public static <T> Fused<T> from(Observable<T> source) {
+        return new Fused<>(source, new int[0], new Object[0]);
+    }
+
+    public <R> Fused<R> map(Func1<? super T, ? extends R> func) {
+        return append(MAP, func);
+    }
+
+    public Fused<T> filter(Func1<? super T, Boolean> predicate) {
+        return append(FILTER, predicate);
+    }
+
+    public Fused<T> doOnNext(Action1<? super T> action) {
+        return append(DO_ON_NEXT, action);
+    }
+
+    @SuppressWarnings("unchecked")
+    public Observable<T> asObservable() {
+        if (kinds.length == 0) return (Observable<T>) source;
+        return ((Observable<Object>) source).lift(child -> new FusedSubscriber<>(child, kinds, functions));
+    }
+
+    private <R> Fused<R> append(int kind, Object function) {
+        int[] newKinds = Arrays.copyOf(kinds, kinds.length + 1);
+        Object[] newFunctions = Arrays.copyOf(functions, functions.length + 1);
+        newKinds[kinds.length] = kind;
+        newFunctions[functions.length] = function;
+        return new Fused<>(source, newKinds, newFunctions);
+    }
+
+    private static class FusedSubscriber<R> extends Subscriber<Object> {
+
+        private final Subscriber<? super R> child;
+        private final Stage head;
+
+        FusedSubscriber(Subscriber<? super R> child, int[] kinds, Object[] functions) {
+            super(child);
+            this.child = child;
+            this.head = Stage.compile(kinds, functions, child);
+        }
+
+        @Override
+        public void onNext(Object t) {
+            boolean emitted;
+            try {
+                emitted = head.push(t);
+            } catch (Throwable e) {
+                Exceptions.throwIfFatal(e);
+                onError(OnErrorThrowable.addValueAsLastCause(e, t));
+                return;
+            }
+            if (!emitted) request(1);                           // As filter does - replace what we've dropped
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            child.onError(e);
+        }
+
+        @Override
+        public void onCompleted() {
+            child.onCompleted();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package uk.camsw.rxjava.intro.fusion;
+
+import rx.Subscriber;
+import rx.functions.Action1;
+import rx.functions.Func1;
+
+import java.util.Arrays;
+
+// One link in a fused chain.  Stages call straight through to the next, with none of the per-operator subscriber
+// machinery in between.  Adjacent stages of the same kind are compiled into one, so a run of maps (or filters, or
+// doOnNexts) is a single loop over its functions rather than a call per stage.  push returns false if a filter
+// dropped the value
+abstract class Stage {
+
+    abstract boolean push(Object value);
+
+    // Built back to front, so each stage knows the next one
+    @SuppressWarnings("unchecked")
+    static Stage compile(int[] kinds, Object[] functions, Subscriber<?> child) {
+        Stage stage = new Emit((Subscriber<Object>) child);
+        int end = kinds.length;
+        while (end > 0) {
+            int start = end - 1;
+            while (start > 0 && kinds[start - 1] == kinds[end - 1]) start--;
+            Object[] run = Arrays.copyOfRange(functions, start, end);
+            switch (kinds[start]) {
+                case Fused.MAP:
+                    stage = new Map(Arrays.copyOf(run, run.length, Func1[].class), stage);
+                    break;
+                case Fused.FILTER:
+                    stage = new Filter(Arrays.copyOf(run, run.length, Func1[].class), stage);
+                    break;
+                default:
+                    stage = new DoOnNext(Arrays.copyOf(run, run.length, Action1[].class), stage);
+            }
+            end = start;
+        }
+        return stage;
+    }
+
+    private static final class Map extends Stage {
+        private final Func1<Object, Object>[] funcs;
+        private final Stage next;
+
+        Map(Func1<Object, Object>[] funcs, Stage next) {
+            this.funcs = funcs;
+            this.next = next;
+        }
+
+        @Override
+        boolean push(Object value) {
+            for (Func1<Object, Object> func : funcs) {
+                value = func.call(value);
+            }
+            return next.push(value);
+        }
+    }
+
+    private static final class Filter extends Stage {
+        private final Func1<Object, Boolean>[] predicates;
+        private final Stage next;
+
+        Filter(Func1<Object, Boolean>[] predicates, Stage next) {
+            this.predicates = predicates;
+            this.next = next;
+        }
+
+        @Override
+        boolean push(Object value) {
+            for (Func1<Object, Boolean> predicate : predicates) {
+                if (!predicate.call(value)) return false;
+            }
+            return next.push(value);
+        }
+    }
+
+    private static final class DoOnNext extends Stage {
+        private final Action1<Object>[] actions;
+        private final Stage next;
+
+        DoOnNext(Action1<Object>[] actions, Stage next) {
+            this.actions = actions;
+            this.next = next;
+        }
+
+        @Override
+        boolean push(Object value) {
+            for (Action1<Object> action : actions) {
+                action.call(value);
+            }
+            return next.push(value);
+        }
+    }
+
+    private static final class Emit extends Stage {
+        private final Subscriber<Object> child;
+
+        Emit(Subscriber<Object> child) {
+            this.child = child;
+        }
+
+        @Override
+        boolean push(Object value) {
+            child.onNext(value);
+            return true;
+        }
+    }
+}
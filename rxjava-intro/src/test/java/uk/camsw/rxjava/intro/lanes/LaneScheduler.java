@@ -0,0 +1,295 @@
+package uk.camsw.rxjava.intro.lanes;
+
+import org.HdrHistogram.Histogram;
+import rx.Observable;
+import rx.Scheduler;
+import rx.Subscriber;
+import rx.Subscription;
+import rx.functions.Action0;
+import rx.schedulers.Schedulers;
+import rx.subscriptions.CompositeSubscription;
+import rx.subscriptions.MultipleAssignmentSubscription;
+import rx.subscriptions.Subscriptions;
+
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+// A single threaded event loop, like Schedulers.from(Executors.newSingleThreadExecutor()), but with a queue per lane
+// rather than one FIFO queue for everything.  Lane 0 is the most important.  By default the loop always runs the
+// most important work it has (strict priority); with weights each lane gets up to its weight in tasks per round, so
+// bulk lanes can't be starved completely.
+//
+// Streams are put on a lane as they are merged:
+//
+//   control.compose(lanes.observeOn(0))
+//          .mergeWith(data.compose(lanes.observeOn(1)))
+//
+// Each event is queued on its own, so a control event waits for at most the one bulk event already running.  The
+// time every task spends queued is recorded per lane.  Unsubscribe to stop the loop - anything still queued, or
+// queued afterwards, is dropped
+public class LaneScheduler implements Subscription {
+
+    private final int[] weights;
+    private final boolean strict;
+    private final Queue<Task>[] queues;
+    private final Histogram[] latencies;
+    private final Thread loop;
+    private final AtomicBoolean idle = new AtomicBoolean();
+    private volatile boolean stopped;
+
+    @SuppressWarnings("unchecked")
+    public LaneScheduler(Builder builder) {
+        this.weights = builder.weights;
+        this.strict = builder.strict;
+        this.queues = new Queue[weights.length];
+        this.latencies = new Histogram[weights.length];
+        for (int lane = 0; lane < weights.length; lane++) {
+            queues[lane] = new ConcurrentLinkedQueue<>();
+            latencies[lane] = new Histogram(TimeUnit.MINUTES.toNanos(1), 3);
+        }
+        this.loop = new Thread(this::loop, "lane-scheduler");
+        this.loop.setDaemon(true);
+        this.loop.start();
+    }
+
+    public int lanes() {
+        return queues.length;
+    }
+
+    // A scheduler whose work runs on the given lane
+    public Scheduler lane(int lane) {
+        checkLane(lane);
+        return new Scheduler() {
+            @Override
+            public Worker createWorker() {
+                return new LaneWorker(lane);
+            }
+        };
+    }
+
+    // observeOn for a single lane.  Unlike observeOn there's no buffer of its own, each event goes straight onto the
+    // lane's queue, and the downstream's requests are passed straight upstream
+    public <T> Observable.Transformer<T, T> observeOn(int lane) {
+        checkLane(lane);
+        return source -> source.lift(child -> new Subscriber<T>(child) {
+            @Override
+            public void onNext(T t) {
+                enqueue(lane, () -> {
+                    if (!child.isUnsubscribed()) child.onNext(t);
+                });
+            }
+
+            @Override
+            public void onError(Throwable e) {
+                enqueue(lane, () -> child.onError(e));
+            }
+
+            @Override
+            public void onCompleted() {
+                enqueue(lane, child::onCompleted);
+            }
+        });
+    }
+
+    // How long tasks on the lane waited to run, in nanoseconds
+    public Histogram latencies(int lane) {
+        checkLane(lane);
+        synchronized (latencies[lane]) {
+            return latencies[lane].copy();
+        }
+    }
+
+    @Override
+    public void unsubscribe() {
+        stopped = true;
+        for (Queue<Task> queue : queues) {
+            queue.clear();
+        }
+        LockSupport.unpark(loop);
+    }
+
+    @Override
+    public boolean isUnsubscribed() {
+        return stopped;
+    }
+
+    private void enqueue(int lane, Action0 action) {
+        enqueue(new Task(lane, action));
+    }
+
+    private void enqueue(Task task) {
+        if (stopped) return;                                    // Nothing would ever run it
+        queues[task.lane].offer(task);
+        if (stopped) {
+            queues[task.lane].clear();                          // Raced with unsubscribe, don't leave it behind
+        } else if (idle.compareAndSet(true, false)) {
+            LockSupport.unpark(loop);
+        }
+    }
+
+    private void loop() {
+        int lane = 0;
+        int served = 0;
+        while (!stopped) {
+            Task task = null;
+            if (strict) {
+                for (Queue<Task> queue : queues) {
+                    if ((task = queue.poll()) != null) break;
+                }
+            } else {
+                // Weighted round robin: stay on a lane until it has had its share or runs dry, then move on
+                for (int tried = 0; tried <= queues.length && task == null; tried++) {
+                    if (served < weights[lane] && (task = queues[lane].poll()) != null) {
+                        served++;
+                    } else {
+                        lane = (lane + 1) % queues.length;
+                        served = 0;
+                    }
+                }
+            }
+
+            if (task == null) {
+                idle.set(true);
+                // Re-check before parking, something may have been queued before we said we were idle
+                if (isEmpty()) LockSupport.park(this);
+                idle.set(false);
+                continue;
+            }
+            task.run();
+        }
+    }
+
+    private boolean isEmpty() {
+        for (Queue<Task> queue : queues) {
+            if (!queue.isEmpty()) return false;
+        }
+        return true;
+    }
+
+    private void checkLane(int lane) {
+        if (lane < 0 || lane >= queues.length) {
+            throw new IllegalArgumentException("No lane " + lane + ", there are " + queues.length);
+        }
+    }
+
+    private class Task implements Subscription {
+        private final int lane;
+        private final Action0 action;
+        private final long queuedAt = System.nanoTime();
+        private volatile boolean cancelled;
+
+        Task(int lane, Action0 action) {
+            this.lane = lane;
+            this.action = action;
+        }
+
+        void run() {
+            Histogram histogram = latencies[lane];
+            synchronized (histogram) {
+                histogram.recordValue(Math.min(Math.max(0, System.nanoTime() - queuedAt), histogram.getHighestTrackableValue()));
+            }
+            if (cancelled) return;
+            try {
+                action.call();
+            } catch (Throwable e) {
+                // As the other schedulers do, don't let one bad task take the loop down
+                Thread currentThread = Thread.currentThread();
+                currentThread.getUncaughtExceptionHandler().uncaughtException(currentThread, e);
+            }
+        }
+
+        @Override
+        public void unsubscribe() {
+            cancelled = true;
+        }
+
+        @Override
+        public boolean isUnsubscribed() {
+            return cancelled;
+        }
+    }
+
+    // Delayed work waits on a computation worker, then joins the lane when it's due
+    private class LaneWorker extends Scheduler.Worker {
+        private final int lane;
+        private final CompositeSubscription subscriptions = new CompositeSubscription();
+        private final Scheduler.Worker timer = Schedulers.computation().createWorker();
+
+        LaneWorker(int lane) {
+            this.lane = lane;
+            subscriptions.add(timer);
+        }
+
+        @Override
+        public Subscription schedule(Action0 action) {
+            if (isUnsubscribed() || stopped) return Subscriptions.unsubscribed();
+            Task[] task = {null};
+            task[0] = new Task(lane, () -> {
+                try {
+                    action.call();
+                } finally {
+                    subscriptions.remove(task[0]);               // Done with, don't hold on to it
+                }
+            });
+            subscriptions.add(task[0]);
+            enqueue(task[0]);
+            return task[0];
+        }
+
+        @Override
+        public Subscription schedule(Action0 action, long delayTime, TimeUnit unit) {
+            if (delayTime <= 0) return schedule(action);
+            if (isUnsubscribed() || stopped) return Subscriptions.unsubscribed();
+            MultipleAssignmentSubscription delayed = new MultipleAssignmentSubscription();
+            delayed.set(timer.schedule(() -> delayed.set(schedule(action)), delayTime, unit));
+            return delayed;
+        }
+
+        @Override
+        public void unsubscribe() {
+            subscriptions.unsubscribe();
+        }
+
+        @Override
+        public boolean isUnsubscribed() {
+            return subscriptions.isUnsubscribed();
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        int[] weights = {1, 1};
+        boolean strict = true;
+
+        public LaneScheduler build() {
+            return new LaneScheduler(this);
+        }
+
+        // Strict priority across the given number of lanes
+        public Builder withLanes(int lanes) {
+            if (lanes < 1) throw new IllegalArgumentException("Need at least one lane");
+            this.weights = new int[lanes];
+            Arrays.fill(weights, 1);
+            this.strict = true;
+            return this;
+        }
+
+        // Weighted round robin, one lane per weight
+        public Builder withWeights(int... weights) {
+            if (weights.length < 1) throw new IllegalArgumentException("Need at least one lane");
+            for (int weight : weights) {
+                if (weight < 1) throw new IllegalArgumentException("Weights must be positive");
+            }
+            this.weights = weights.clone();
+            this.strict = false;
+            return this;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package uk.camsw.rxjava.intro.load;
+
+import rx.functions.Func1;
+
+// A value along with the time (in nanoseconds, on the producer's clock) it was supposed to be sent.  Measuring latency from here, rather than
+// from when it actually went out, is what stops a stalled consumer from hiding its own stalls (coordinated omission)
+public final class Intended<T> {
+
+    private final long intendedNanos;
+    private final T value;
+
+    public Intended(long intendedNanos, T value) {
+        this.intendedNanos = intendedNanos;
+        this.value = value;
+    }
+
+    public long intendedNanos() {
+        return intendedNanos;
+    }
+
+    public T value() {
+        return value;
+    }
+
+    public <R> Intended<R> map(Func1<? super T, ? extends R> func) {
+        return new Intended<>(intendedNanos, func.call(value));
+    }
+
+    @Override
+    public String toString() {
+        return "Intended{intendedNanos=" + intendedNanos + ", value=" + value + "}";
+    }
+}
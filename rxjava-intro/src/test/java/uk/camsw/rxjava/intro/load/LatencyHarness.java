@@ -0,0 +1,137 @@
+package uk.camsw.rxjava.intro.load;
+
+import org.HdrHistogram.Histogram;
+import rx.Observable;
+import rx.Subscription;
+import rx.functions.Func1;
+import uk.camsw.rxjava.intro.Producer;
+import uk.camsw.rxjava.intro.time.TimeSource;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+// Drives a pipeline with an open loop Producer at a fixed rate and records end-to-end latency, from each event's
+// intended send time to its arrival at the subscriber.  sweep() steps the rate up until the pipeline saturates
+public class LatencyHarness {
+
+    private static final TimeSource CLOCK = TimeSource.system();
+
+    private final Func1<Observable<Intended<Integer>>, Observable<? extends Intended<?>>> pipeline;
+    private final Duration warmup;
+    private final Duration duration;
+    private final Duration p99Limit;
+
+    public LatencyHarness(Builder builder) {
+        this.pipeline = builder.pipeline;
+        this.warmup = builder.warmup;
+        this.duration = builder.duration;
+        this.p99Limit = builder.p99Limit;
+    }
+
+    public LatencyReport run(long eventsPerSecond) {
+        Histogram latencies = new Histogram(TimeUnit.MINUTES.toNanos(1), 3);
+        Producer producer = Producer.builder()
+                .withRate(eventsPerSecond)
+                .withClock(CLOCK)
+                .build();
+
+        long measureFrom = nanos() + warmup.toNanos();
+        long measureUntil = measureFrom + duration.toNanos();
+        long[] received = {0};
+        Throwable[] error = {null};
+        CountDownLatch done = new CountDownLatch(1);
+
+        Subscription subscription = pipeline.call(producer.asOpenLoopObservable())
+                .subscribe(event -> {
+                    long now = nanos();
+                    long intended = event.intendedNanos();
+                    if (intended < measureFrom) return;
+                    if (intended >= measureUntil) {
+                        done.countDown();
+                        return;
+                    }
+                    synchronized (latencies) {
+                        latencies.recordValue(Math.min(now - intended, latencies.getHighestTrackableValue()));
+                        received[0]++;
+                    }
+                }, e -> {
+                    error[0] = e;
+                    done.countDown();
+                });
+
+        try {
+            // Give a saturated pipeline a little grace to drain, then measure whatever made it through
+            done.await(warmup.plus(duration).multipliedBy(2).toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            subscription.unsubscribe();
+        }
+        synchronized (latencies) {
+            // Anything that never turned up has been waiting since at least the end of the run.  Leaving it out
+            // would flatter a saturated pipeline, so it goes in at that (lower bound) latency
+            long expected = duration.toNanos() * eventsPerSecond / TimeUnit.SECONDS.toNanos(1);
+            long missing = expected - received[0];
+            if (missing > 0) {
+                long waited = Math.max(0, Math.min(nanos() - measureUntil, latencies.getHighestTrackableValue()));
+                latencies.recordValueWithCount(waited, missing);
+            }
+            return new LatencyReport(eventsPerSecond, received[0], duration.toNanos(), latencies.copy(), error[0]);
+        }
+    }
+
+    // The producer stamps events on this clock, so arrivals are timed on it too
+    private static long nanos() {
+        return TimeUnit.MICROSECONDS.toNanos(CLOCK.micros());
+    }
+
+    // Runs each rate in turn, stopping after the first one that saturates
+    public List<LatencyReport> sweep(long... eventsPerSecond) {
+        List<LatencyReport> reports = new ArrayList<>();
+        for (long rate : eventsPerSecond) {
+            LatencyReport report = run(rate);
+            System.out.println(report);
+            reports.add(report);
+            if (report.isSaturated(p99Limit.toNanos())) break;
+        }
+        return reports;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        Func1<Observable<Intended<Integer>>, Observable<? extends Intended<?>>> pipeline = source -> source;
+        Duration warmup = Duration.ofSeconds(1);
+        Duration duration = Duration.ofSeconds(5);
+        Duration p99Limit = Duration.ofMillis(1);
+
+        public LatencyHarness build() {
+            return new LatencyHarness(this);
+        }
+
+        public Builder withPipeline(Func1<Observable<Intended<Integer>>, Observable<? extends Intended<?>>> pipeline) {
+            this.pipeline = pipeline;
+            return this;
+        }
+
+        public Builder withWarmup(Duration warmup) {
+            this.warmup = warmup;
+            return this;
+        }
+
+        public Builder withDuration(Duration duration) {
+            this.duration = duration;
+            return this;
+        }
+
+        public Builder withP99Limit(Duration p99Limit) {
+            this.p99Limit = p99Limit;
+            return this;
+        }
+    }
+}
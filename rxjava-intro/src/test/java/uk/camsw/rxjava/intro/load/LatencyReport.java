@@ -0,0 +1,56 @@
+package uk.camsw.rxjava.intro.load;
+
+import org.HdrHistogram.Histogram;
+
+import java.util.concurrent.TimeUnit;
+
+public final class LatencyReport {
+
+    private final long targetRate;
+    private final long received;
+    private final long elapsedNanos;
+    private final Histogram latencies;
+    private final Throwable error;
+
+    LatencyReport(long targetRate, long received, long elapsedNanos, Histogram latencies, Throwable error) {
+        this.targetRate = targetRate;
+        this.received = received;
+        this.elapsedNanos = elapsedNanos;
+        this.latencies = latencies;
+        this.error = error;
+    }
+
+    public long targetRate() {
+        return targetRate;
+    }
+
+    public double achievedRate() {
+        return received * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+
+    // Latencies in nanoseconds, measured from each event's intended send time
+    public Histogram latencies() {
+        return latencies;
+    }
+
+    // Set if the pipeline failed part way through (a MissingBackpressureException, for example)
+    public Throwable error() {
+        return error;
+    }
+
+    public long percentile(double percentile) {
+        return latencies.getValueAtPercentile(percentile);
+    }
+
+    // Saturated once we can't keep up with the target rate, or can't do so within the latency budget
+    public boolean isSaturated(long p99LimitNanos) {
+        return error != null || achievedRate() < targetRate * 0.95 || percentile(99) > p99LimitNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("rate=%,d/s achieved=%,.0f/s p50=%,dns p99=%,dns p99.9=%,dns max=%,dns%s",
+                targetRate, achievedRate(), percentile(50), percentile(99), percentile(99.9), latencies.getMaxValue(),
+                error == null ? "" : " error=" + error);
+    }
+}
@@ -0,0 +1,28 @@
+package uk.camsw.rxjava.intro.perf;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DurationAssertion<P> {
+
+    private final P parent;
+    private final String description;
+    private final Duration actual;
+
+    DurationAssertion(P parent, String description, Duration actual) {
+        this.parent = parent;
+        this.description = description;
+        this.actual = actual;
+    }
+
+    public P isBelow(Duration expected) {
+        assertThat(actual).as(description).isLessThan(expected);
+        return parent;
+    }
+
+    public P isAtMost(Duration expected) {
+        assertThat(actual).as(description).isLessThanOrEqualTo(expected);
+        return parent;
+    }
+}
@@ -0,0 +1,36 @@
+package uk.camsw.rxjava.intro.perf;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class NumberAssertion<P> {
+
+    private final P parent;
+    private final String description;
+    private final long actual;
+
+    NumberAssertion(P parent, String description, long actual) {
+        this.parent = parent;
+        this.description = description;
+        this.actual = actual;
+    }
+
+    public P isAtLeast(long expected) {
+        assertThat(actual).as(description).isGreaterThanOrEqualTo(expected);
+        return parent;
+    }
+
+    public P isAtMost(long expected) {
+        assertThat(actual).as(description).isLessThanOrEqualTo(expected);
+        return parent;
+    }
+
+    public P isBelow(long expected) {
+        assertThat(actual).as(description).isLessThan(expected);
+        return parent;
+    }
+
+    public P isEqualTo(long expected) {
+        assertThat(actual).as(description).isEqualTo(expected);
+        return parent;
+    }
+}
@@ -0,0 +1,214 @@
+package uk.camsw.rxjava.intro.perf;
+
+import org.HdrHistogram.Histogram;
+import rx.Observable;
+import rx.Subscriber;
+import rx.functions.Func1;
+import rx.subjects.PublishSubject;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// A companion to TestScenario for performance expectations.  The stream under test is pushed a number of warm up
+// events, then the measured events, and the subscriber's view of them can be asserted on:
+//
+//   PerformanceScenario.<Integer, Integer>create()
+//       .given()
+//       .theStreamUnderTest(source -> source.map(n -> n + 1))
+//       .theEventCount(100_000)
+//       .theWarmupCount(10_000)
+//
+//       .when()
+//       .theScenarioRuns()
+//
+//       .then()
+//       .theSubscriber()
+//       .throughput().isAtLeast(100_000)
+//       .latencyP99().isBelow(Duration.ofMillis(1))
+//
+// Latency and queue depth pair the nth event received with the nth event emitted, so they are only meaningful for
+// streams that emit one event out for each event in.  Asserting on either fails if the counts don't match
+public class PerformanceScenario<T, R> {
+
+    private Func1<Observable<T>, Observable<R>> streamUnderTest;
+    private Func1<Integer, T> events;
+    private int eventCount = 100_000;
+    private int warmupCount = 10_000;
+    private Duration asyncTimeout = Duration.ofSeconds(10);
+    private SubscriberPerformance<R> results;
+
+    public static <T, R> PerformanceScenario<T, R> create() {
+        return new PerformanceScenario<>();
+    }
+
+    public Given given() {
+        return new Given();
+    }
+
+    public class Given {
+
+        public Given theStreamUnderTest(Func1<Observable<T>, Observable<R>> streamUnderTest) {
+            PerformanceScenario.this.streamUnderTest = streamUnderTest;
+            return this;
+        }
+
+        // The nth event the source emits (warm up included)
+        public Given theEvents(Func1<Integer, T> events) {
+            PerformanceScenario.this.events = events;
+            return this;
+        }
+
+        public Given theEventCount(int eventCount) {
+            PerformanceScenario.this.eventCount = eventCount;
+            return this;
+        }
+
+        public Given theWarmupCount(int warmupCount) {
+            PerformanceScenario.this.warmupCount = warmupCount;
+            return this;
+        }
+
+        public Given asyncTimeoutOf(Duration asyncTimeout) {
+            PerformanceScenario.this.asyncTimeout = asyncTimeout;
+            return this;
+        }
+
+        public When when() {
+            return new When();
+        }
+    }
+
+    public class When {
+
+        public When theScenarioRuns() {
+            results = run();
+            return this;
+        }
+
+        public Then then() {
+            return new Then();
+        }
+    }
+
+    public class Then {
+
+        public SubscriberPerformance<R> theSubscriber() {
+            if (results == null) throw new IllegalStateException("The scenario hasn't run, did you forget when().theScenarioRuns()?");
+            return results;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private SubscriberPerformance<R> run() {
+        if (streamUnderTest == null) throw new IllegalStateException("No stream under test");
+        if (eventCount <= 0) throw new IllegalStateException("Event count must be positive");
+        Func1<Integer, T> events = this.events == null ? n -> (T) n : this.events;
+
+        // Warm up on its own subscription, so none of it is counted
+        drive(events, 0, warmupCount, null);
+
+        Measurement measurement = new Measurement(eventCount);
+        long allocatedBefore = allocatedBytes();
+        drive(events, warmupCount, eventCount, measurement);
+        long allocated = allocatedBytes() - allocatedBefore;
+
+        return new SubscriberPerformance<>(measurement.latencies(), measurement.throughput(), measurement.maxQueueDepth,
+                allocated < 0 ? -1 : allocated / Math.max(1, eventCount), measurement.received.get(), eventCount);
+    }
+
+    private void drive(Func1<Integer, T> events, int from, int count, Measurement measurement) {
+        PublishSubject<T> source = PublishSubject.create();
+        CountDownLatch terminated = new CountDownLatch(1);
+        Throwable[] error = {null};
+        streamUnderTest.call(source).subscribe(new Subscriber<R>() {
+            @Override
+            public void onNext(R r) {
+                if (measurement != null) measurement.arrived(System.nanoTime());
+            }
+
+            @Override
+            public void onError(Throwable e) {
+                error[0] = e;
+                terminated.countDown();
+            }
+
+            @Override
+            public void onCompleted() {
+                terminated.countDown();
+            }
+        });
+
+        for (int i = 0; i < count; i++) {
+            T event = events.call(from + i);
+            if (measurement != null) measurement.emitting(i, System.nanoTime());
+            source.onNext(event);
+        }
+        source.onCompleted();
+        try {
+            if (!terminated.await(asyncTimeout.toNanos(), TimeUnit.NANOSECONDS)) {
+                throw new AssertionError("Stream under test did not complete within " + asyncTimeout);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (error[0] != null) throw new AssertionError("Stream under test failed", error[0]);
+    }
+
+    // Bytes allocated by every live thread so far, or -1 if the JVM can't tell us
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) return -1;
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+        if (!allocations.isThreadAllocatedMemorySupported() || !allocations.isThreadAllocatedMemoryEnabled()) return -1;
+        long total = 0;
+        for (long allocated : allocations.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            if (allocated > 0) total += allocated;
+        }
+        return total;
+    }
+
+    private static class Measurement {
+        final long[] emittedAt;
+        final Histogram latencies = new Histogram(TimeUnit.MINUTES.toNanos(1), 3);
+        final AtomicLong emitted = new AtomicLong();
+        final AtomicLong received = new AtomicLong();
+        volatile long lastArrival;
+        long maxQueueDepth;
+
+        Measurement(int eventCount) {
+            this.emittedAt = new long[eventCount];
+        }
+
+        // Source thread
+        void emitting(int index, long now) {
+            emittedAt[index] = now;
+            long emittedSoFar = emitted.incrementAndGet();
+            maxQueueDepth = Math.max(maxQueueDepth, emittedSoFar - 1 - received.get());
+        }
+
+        // Subscriber thread, which Rx guarantees is one at a time
+        void arrived(long now) {
+            long index = received.getAndIncrement();
+            if (index < emittedAt.length) {
+                synchronized (latencies) {
+                    latencies.recordValue(Math.min(Math.max(0, now - emittedAt[(int) index]), latencies.getHighestTrackableValue()));
+                }
+            }
+            lastArrival = now;
+        }
+
+        Histogram latencies() {
+            synchronized (latencies) {
+                return latencies.copy();
+            }
+        }
+
+        double throughput() {
+            long elapsed = lastArrival - emittedAt[0];
+            return elapsed <= 0 ? 0 : received.get() * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+        }
+    }
+}
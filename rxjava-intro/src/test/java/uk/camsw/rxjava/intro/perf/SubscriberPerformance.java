@@ -0,0 +1,82 @@
+package uk.camsw.rxjava.intro.perf;
+
+import org.HdrHistogram.Histogram;
+
+import java.time.Duration;
+
+import static org.junit.Assume.assumeTrue;
+
+// What the subscriber saw during the measured part of a PerformanceScenario
+public class SubscriberPerformance<R> {
+
+    private final Histogram latencies;
+    private final double throughput;
+    private final long maxQueueDepth;
+    private final long allocationsPerEvent;
+    private final long eventCount;
+    private final long sourceEventCount;
+
+    SubscriberPerformance(Histogram latencies, double throughput, long maxQueueDepth, long allocationsPerEvent,
+                          long eventCount, long sourceEventCount) {
+        this.latencies = latencies;
+        this.throughput = throughput;
+        this.maxQueueDepth = maxQueueDepth;
+        this.allocationsPerEvent = allocationsPerEvent;
+        this.eventCount = eventCount;
+        this.sourceEventCount = sourceEventCount;
+    }
+
+    // Events per second, from the first measured emission to the last arrival
+    public NumberAssertion<SubscriberPerformance<R>> throughput() {
+        return new NumberAssertion<>(this, "throughput (events/s)", (long) throughput);
+    }
+
+    public DurationAssertion<SubscriberPerformance<R>> latencyP50() {
+        return latency(50);
+    }
+
+    public DurationAssertion<SubscriberPerformance<R>> latencyP99() {
+        return latency(99);
+    }
+
+    public DurationAssertion<SubscriberPerformance<R>> latencyP999() {
+        return latency(99.9);
+    }
+
+    public DurationAssertion<SubscriberPerformance<R>> latency(double percentile) {
+        checkOneForOne("latency");
+        return new DurationAssertion<>(this, "p" + percentile + " latency", Duration.ofNanos(latencies.getValueAtPercentile(percentile)));
+    }
+
+    // Bytes allocated (across all threads) per measured event.  Skips the test on JVMs that don't count allocations
+    public NumberAssertion<SubscriberPerformance<R>> allocationsPerEvent() {
+        assumeTrue("This JVM doesn't report thread allocations", allocationsPerEvent >= 0);
+        return new NumberAssertion<>(this, "allocations per event (bytes)", allocationsPerEvent);
+    }
+
+    // The most events emitted but not yet received at any one time - zero for a synchronous, one for one stream
+    public NumberAssertion<SubscriberPerformance<R>> maxQueueDepth() {
+        checkOneForOne("queue depth");
+        return new NumberAssertion<>(this, "max queue depth", maxQueueDepth);
+    }
+
+    public NumberAssertion<SubscriberPerformance<R>> eventCount() {
+        return new NumberAssertion<>(this, "event count", eventCount);
+    }
+
+    // Latency and queue depth pair the nth event out with the nth event in, which means nothing for a stream that
+    // filters, buffers or otherwise changes the number of events
+    private void checkOneForOne(String measure) {
+        if (eventCount != sourceEventCount) {
+            throw new AssertionError(String.format("Can't assert on %s: the stream emitted %,d events for %,d in, and %s "
+                    + "is only measured for streams that emit one event for each event in", measure, eventCount, sourceEventCount, measure));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("throughput=%,.0f/s p50=%,dns p99=%,dns p99.9=%,dns allocations/event=%d max queue depth=%d",
+                throughput, latencies.getValueAtPercentile(50), latencies.getValueAtPercentile(99),
+                latencies.getValueAtPercentile(99.9), allocationsPerEvent, maxQueueDepth);
+    }
+}
@@ -0,0 +1,186 @@
+package uk.camsw.rxjava.intro.reactive;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import rx.Observable;
+import rx.exceptions.MissingBackpressureException;
+import rx.subscriptions.Subscriptions;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Adapts between Observables and Reactive Streams Publishers in both directions.  Neither direction has a queue of its
+// own: a Reactive Streams request(n) becomes an Rx request(n) on the upstream Producer, and an Rx Producer's
+// request(n) becomes a Reactive Streams request(n), so events are handed straight from one side to the other in
+// whatever batches the subscriber asks for
+public final class ReactiveStreams {
+
+    private ReactiveStreams() {
+    }
+
+    public static <T> Publisher<T> toPublisher(Observable<T> observable) {
+        return subscriber -> {
+            if (subscriber == null) throw new NullPointerException("Subscriber must not be null");  // Rule 1.9
+            ObservableSubscriber<T> bridge = new ObservableSubscriber<>(subscriber);
+            subscriber.onSubscribe(bridge.subscription);
+            if (!bridge.isUnsubscribed()) observable.unsafeSubscribe(bridge);
+        };
+    }
+
+    public static <T> Observable<T> toObservable(Publisher<T> publisher) {
+        return Observable.create(child -> publisher.subscribe(new Subscriber<T>() {
+            private final AtomicBoolean subscribed = new AtomicBoolean();
+            // The child unsubscribes as it terminates, which would cancel from inside onComplete or onError (rule 2.3).
+            // By then there is nothing left to cancel
+            private volatile boolean done;
+
+            @Override
+            public void onSubscribe(Subscription subscription) {
+                if (!subscribed.compareAndSet(false, true)) {
+                    subscription.cancel();                                      // Rule 2.5
+                    return;
+                }
+                child.add(Subscriptions.create(() -> {
+                    if (!done) subscription.cancel();
+                }));
+                // Rx allows request(0), Reactive Streams doesn't.  Long.MAX_VALUE means unbounded to both
+                child.setProducer(n -> {
+                    if (n > 0) subscription.request(n);
+                });
+            }
+
+            @Override
+            public void onNext(T t) {
+                child.onNext(t);
+            }
+
+            @Override
+            public void onError(Throwable e) {
+                done = true;
+                child.onError(e);
+            }
+
+            @Override
+            public void onComplete() {
+                done = true;
+                child.onCompleted();
+            }
+        }));
+    }
+
+    // Subscribes to the observable on behalf of a Reactive Streams subscriber.  Its subscription calls straight through
+    // to the upstream producer, Rx having already taken care of thread safety and of requests made before the
+    // producer arrives.  Not every observable honours requests though (just, for one, emits as soon as it's
+    // subscribed to), so demand is counted here as well, and an event nobody asked for fails the stream (rule 1.1)
+    private static class ObservableSubscriber<T> extends rx.Subscriber<T> {
+
+        private final Subscriber<? super T> subscriber;
+        private final AtomicLong demand = new AtomicLong();
+
+        // Signals must be serial (rule 1.3), but a bad request arrives on the requesting thread, which may be in the
+        // middle of an onNext on another.  If so the error is left pending for the emitting side to deliver
+        private boolean emitting;
+        private boolean terminated;
+        private Throwable pendingError;
+
+        final Subscription subscription = new Subscription() {
+            @Override
+            public void request(long n) {
+                if (isUnsubscribed()) return;                                   // Rule 3.6
+                if (n <= 0) {
+                    // Rule 3.9
+                    unsubscribe();
+                    fail(new IllegalArgumentException("Rule 3.9: request must be positive, but was " + n));
+                    return;
+                }
+                long current, next;
+                do {
+                    current = demand.get();
+                    next = current + n < 0 ? Long.MAX_VALUE : current + n;     // Rule 3.17
+                } while (!demand.compareAndSet(current, next));
+                ObservableSubscriber.this.request(n);
+            }
+
+            @Override
+            public void cancel() {
+                unsubscribe();
+            }
+        };
+
+        ObservableSubscriber(Subscriber<? super T> subscriber) {
+            this.subscriber = subscriber;
+            request(0);                                                         // Nothing until asked for
+        }
+
+        @Override
+        public void onNext(T t) {
+            if (t == null) {
+                // Rule 2.13
+                unsubscribe();
+                onError(new NullPointerException("Observable emitted a null, which Reactive Streams doesn't allow"));
+                return;
+            }
+            if (!takeDemand()) {
+                unsubscribe();
+                fail(new MissingBackpressureException("Observable emitted more than was requested (rule 1.1)"));
+                return;
+            }
+            synchronized (this) {
+                if (terminated) return;
+                emitting = true;
+            }
+            try {
+                subscriber.onNext(t);
+            } finally {
+                Throwable error;
+                synchronized (this) {
+                    emitting = false;
+                    error = pendingError;
+                    pendingError = null;
+                }
+                if (error != null) subscriber.onError(error);
+            }
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            synchronized (this) {
+                if (terminated) return;
+                terminated = true;
+            }
+            subscriber.onError(e);
+        }
+
+        @Override
+        public void onCompleted() {
+            synchronized (this) {
+                if (terminated) return;
+                terminated = true;
+            }
+            subscriber.onComplete();
+        }
+
+        private boolean takeDemand() {
+            long current;
+            do {
+                current = demand.get();
+                if (current == Long.MAX_VALUE) return true;
+                if (current == 0) return false;
+            } while (!demand.compareAndSet(current, current - 1));
+            return true;
+        }
+
+        private void fail(Throwable e) {
+            synchronized (this) {
+                if (terminated) return;
+                terminated = true;
+                if (emitting) {
+                    pendingError = e;
+                    return;
+                }
+            }
+            subscriber.onError(e);
+        }
+    }
+}
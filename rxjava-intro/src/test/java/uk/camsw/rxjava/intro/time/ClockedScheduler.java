@@ -0,0 +1,57 @@
+package uk.camsw.rxjava.intro.time;
+
+import rx.Scheduler;
+import rx.Subscription;
+import rx.functions.Action0;
+
+import java.util.concurrent.TimeUnit;
+
+// Delegates all scheduling, only the notion of 'now' is replaced.  Note schedulePeriodically is deliberately not
+// delegated: the base implementation re-reads now() on every tick to correct drift, and we want that read to be cheap.
+// That relies on the clock moving; a CoarseClock that has been stopped falls back to reading the OS clock
+class ClockedScheduler extends Scheduler {
+
+    private final Scheduler delegate;
+    private final TimeSource clock;
+
+    ClockedScheduler(Scheduler delegate, TimeSource clock) {
+        this.delegate = delegate;
+        this.clock = clock;
+    }
+
+    @Override
+    public Worker createWorker() {
+        Worker worker = delegate.createWorker();
+        return new Worker() {
+            @Override
+            public Subscription schedule(Action0 action) {
+                return worker.schedule(action);
+            }
+
+            @Override
+            public Subscription schedule(Action0 action, long delayTime, TimeUnit unit) {
+                return worker.schedule(action, delayTime, unit);
+            }
+
+            @Override
+            public long now() {
+                return clock.millis();
+            }
+
+            @Override
+            public void unsubscribe() {
+                worker.unsubscribe();
+            }
+
+            @Override
+            public boolean isUnsubscribed() {
+                return worker.isUnsubscribed();
+            }
+        };
+    }
+
+    @Override
+    public long now() {
+        return clock.millis();
+    }
+}
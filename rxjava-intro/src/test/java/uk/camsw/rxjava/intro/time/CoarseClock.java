@@ -0,0 +1,81 @@
+package uk.camsw.rxjava.intro.time;
+
+import rx.Subscription;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+// A clock that is read far more often than it changes.  A single background ticker refreshes a cached timestamp
+// every 'resolution', so readers pay for a volatile read rather than a trip to the OS clock.
+// Unsubscribe to stop the ticker.  A stopped clock doesn't freeze, it goes back to reading the OS clock on every call,
+// so schedulers still using it (periodic work corrects its drift against now()) keep time, just without the saving
+public class CoarseClock implements TimeSource, Subscription {
+
+    private final long resolutionNanos;
+    private final long originMicros;
+    private final long originNanos;
+    private final Thread ticker;
+    private volatile long micros;
+    private volatile boolean stopped;
+
+    public CoarseClock(Builder builder) {
+        this.resolutionNanos = builder.resolution.toNanos();
+        this.originMicros = TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+        this.originNanos = System.nanoTime();
+        this.micros = originMicros;
+        this.ticker = new Thread(this::tick, "coarse-clock-" + builder.resolution);
+        this.ticker.setDaemon(true);
+        this.ticker.start();
+    }
+
+    private void tick() {
+        while (!stopped) {
+            micros = read();
+            LockSupport.parkNanos(resolutionNanos);
+        }
+    }
+
+    // Anchored to nanoTime so the clock never goes backwards, even if the wall clock is adjusted
+    private long read() {
+        return originMicros + TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - originNanos);
+    }
+
+    @Override
+    public long millis() {
+        return micros() / 1000;
+    }
+
+    @Override
+    public long micros() {
+        return stopped ? read() : micros;
+    }
+
+    @Override
+    public void unsubscribe() {
+        stopped = true;
+        LockSupport.unpark(ticker);
+    }
+
+    @Override
+    public boolean isUnsubscribed() {
+        return stopped;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        Duration resolution = Duration.ofMillis(1);
+
+        public CoarseClock build() {
+            return new CoarseClock(this);
+        }
+
+        public Builder withResolution(Duration resolution) {
+            this.resolution = resolution;
+            return this;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package uk.camsw.rxjava.intro.time;
+
+import java.util.concurrent.TimeUnit;
+
+class SystemTimeSource implements TimeSource {
+
+    static final SystemTimeSource INSTANCE = new SystemTimeSource();
+
+    private final long originMicros = TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+    private final long originNanos = System.nanoTime();
+
+    @Override
+    public long millis() {
+        return System.currentTimeMillis();
+    }
+
+    @Override
+    public long micros() {
+        return originMicros + TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - originNanos);
+    }
+}
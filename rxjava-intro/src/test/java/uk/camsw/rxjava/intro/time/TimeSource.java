@@ -0,0 +1,19 @@
+package uk.camsw.rxjava.intro.time;
+
+import rx.Scheduler;
+
+public interface TimeSource {
+
+    long millis();
+
+    long micros();
+
+    // The same scheduler, but with now() (and therefore timestamp, buffer, sample, Producer stamps...) read from here
+    default Scheduler scheduler(Scheduler delegate) {
+        return new ClockedScheduler(delegate, this);
+    }
+
+    static TimeSource system() {
+        return SystemTimeSource.INSTANCE;
+    }
+}
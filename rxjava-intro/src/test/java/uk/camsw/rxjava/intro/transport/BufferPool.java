@@ -0,0 +1,32 @@
+package uk.camsw.rxjava.intro.transport;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+// Direct buffers are expensive to allocate and are only reclaimed by GC, so we recycle them.
+// Not thread safe, each event loop owns its own pool
+class BufferPool {
+
+    private final int bufferSize;
+    private final int maxPooled;
+    private final ArrayDeque<ByteBuffer> buffers = new ArrayDeque<>();
+
+    BufferPool(int bufferSize, int maxPooled) {
+        this.bufferSize = bufferSize;
+        this.maxPooled = maxPooled;
+    }
+
+    ByteBuffer acquire() {
+        ByteBuffer buffer = buffers.poll();
+        return buffer == null ? ByteBuffer.allocateDirect(bufferSize) : buffer;
+    }
+
+    void release(ByteBuffer buffer) {
+        buffer.clear();
+        if (buffers.size() < maxPooled) buffers.push(buffer);
+    }
+
+    int bufferSize() {
+        return bufferSize;
+    }
+}
@@ -0,0 +1,74 @@
+package uk.camsw.rxjava.intro.transport;
+
+import rx.schedulers.Timestamped;
+
+import java.nio.ByteBuffer;
+
+public interface Codec<T> {
+
+    // Upper bound on the bytes encode will write for a single value
+    int maxEncodedSize();
+
+    void encode(T value, ByteBuffer buffer);
+
+    T decode(ByteBuffer buffer);
+
+    static Codec<Integer> integers() {
+        return new Codec<Integer>() {
+            @Override
+            public int maxEncodedSize() {
+                return Integer.BYTES;
+            }
+
+            @Override
+            public void encode(Integer value, ByteBuffer buffer) {
+                buffer.putInt(value);
+            }
+
+            @Override
+            public Integer decode(ByteBuffer buffer) {
+                return buffer.getInt();
+            }
+        };
+    }
+
+    static Codec<Long> longs() {
+        return new Codec<Long>() {
+            @Override
+            public int maxEncodedSize() {
+                return Long.BYTES;
+            }
+
+            @Override
+            public void encode(Long value, ByteBuffer buffer) {
+                buffer.putLong(value);
+            }
+
+            @Override
+            public Long decode(ByteBuffer buffer) {
+                return buffer.getLong();
+            }
+        };
+    }
+
+    static Codec<Timestamped<Integer>> timestampedIntegers() {
+        return new Codec<Timestamped<Integer>>() {
+            @Override
+            public int maxEncodedSize() {
+                return Long.BYTES + Integer.BYTES;
+            }
+
+            @Override
+            public void encode(Timestamped<Integer> value, ByteBuffer buffer) {
+                buffer.putLong(value.getTimestampMillis());
+                buffer.putInt(value.getValue());
+            }
+
+            @Override
+            public Timestamped<Integer> decode(ByteBuffer buffer) {
+                long timestamp = buffer.getLong();
+                return new Timestamped<>(timestamp, buffer.getInt());
+            }
+        };
+    }
+}
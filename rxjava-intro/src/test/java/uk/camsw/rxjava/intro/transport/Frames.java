@@ -0,0 +1,63 @@
+package uk.camsw.rxjava.intro.transport;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// Every frame is [int length][byte type][payload], where length covers the type byte and the payload.
+// Subscribers send REQUEST frames (credit, as per request(n)), publishers answer with NEXT, ERROR and COMPLETED
+final class Frames {
+
+    static final int HEADER = Integer.BYTES + 1;
+    static final int MAX_ERROR_MESSAGE = 1024;
+
+    static final byte REQUEST = 1;
+    static final byte NEXT = 2;
+    static final byte ERROR = 3;
+    static final byte COMPLETED = 4;
+
+    private Frames() {
+    }
+
+    static <T> void writeNext(ByteBuffer buffer, Codec<T> codec, T value) {
+        int start = buffer.position();
+        buffer.position(start + HEADER);
+        codec.encode(value, buffer);
+        buffer.putInt(start, buffer.position() - start - Integer.BYTES);
+        buffer.put(start + Integer.BYTES, NEXT);
+    }
+
+    static void writeRequest(ByteBuffer buffer, long n) {
+        buffer.putInt(1 + Long.BYTES).put(REQUEST).putLong(n);
+    }
+
+    static void writeCompleted(ByteBuffer buffer) {
+        buffer.putInt(1).put(COMPLETED);
+    }
+
+    static void writeError(ByteBuffer buffer, Throwable e) {
+        byte[] message = String.valueOf(e).getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(message.length, MAX_ERROR_MESSAGE);
+        buffer.putInt(1 + length).put(ERROR).put(message, 0, length);
+    }
+
+    static String readError(ByteBuffer buffer, int length) {
+        byte[] message = new byte[length];
+        buffer.get(message);
+        return new String(message, StandardCharsets.UTF_8);
+    }
+
+    // False if the frame at the head of the (read mode) buffer claims a length that could never fit in the buffer, in
+    // which case waiting for the rest of it would wait forever
+    static boolean hasValidLength(ByteBuffer buffer) {
+        if (buffer.remaining() < Integer.BYTES) return true;
+        int length = buffer.getInt(buffer.position());
+        return length >= 1 && length <= buffer.capacity() - Integer.BYTES;
+    }
+
+    // True if a whole (validly sized) frame is sitting in the (read mode) buffer
+    static boolean hasFrame(ByteBuffer buffer) {
+        return buffer.remaining() >= Integer.BYTES
+                && hasValidLength(buffer)
+                && buffer.remaining() >= Integer.BYTES + buffer.getInt(buffer.position());
+    }
+}
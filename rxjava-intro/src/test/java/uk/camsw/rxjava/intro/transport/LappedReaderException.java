@@ -0,0 +1,8 @@
+package uk.camsw.rxjava.intro.transport;
+
+public class LappedReaderException extends IllegalStateException {
+
+    public LappedReaderException(long sequence, long published, int capacity) {
+        super("Reader at " + sequence + " was lapped by the writer at " + published + " (capacity " + capacity + ")");
+    }
+}
@@ -0,0 +1,11 @@
+package uk.camsw.rxjava.intro.transport;
+
+// A shared memory reader that falls more than a ring's worth behind the writer has missed events
+public enum LappedReaderPolicy {
+
+    // Terminate the reader's stream with a LappedReaderException
+    ERROR,
+
+    // Skip ahead to the oldest event still available and carry on
+    DROP
+}
@@ -0,0 +1,164 @@
+package uk.camsw.rxjava.intro.transport;
+
+import rx.Observable;
+import rx.Subscriber;
+import rx.subscriptions.Subscriptions;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.atomic.AtomicLong;
+
+// The subscribing end of a WireServer.  Each subscription opens its own connection, and the subscriber's request(n)
+// is forwarded as credit.  As with observeOn, credit goes out a window at a time and is topped up as events are
+// delivered, so even an unbounded subscriber never has more than WINDOW events in flight, and a slow consumer slows
+// the remote producer rather than filling up a buffer somewhere
+public class RemoteObservable {
+
+    static final int WINDOW = 128;
+
+    public static <T> Observable<T> connect(InetSocketAddress address, Codec<T> codec) {
+        return Observable.create(subscriber -> {
+            try {
+                new Connection<>(address, codec, subscriber).start();
+            } catch (IOException e) {
+                subscriber.onError(e);
+            }
+        });
+    }
+
+    private static class Connection<T> {
+
+        private final Codec<T> codec;
+        private final Subscriber<? super T> subscriber;
+        private final SocketChannel channel;
+        private final Selector selector;
+        private final SelectionKey key;
+        private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(64 * 1024);
+        private final ByteBuffer requestBuffer = ByteBuffer.allocateDirect(Frames.HEADER + Long.BYTES);
+        private final AtomicLong requested = new AtomicLong();      // Asked for downstream, not yet delivered
+        private long granted;                                          // Sent as credit, not yet received
+        private volatile boolean closed;
+
+        Connection(InetSocketAddress address, Codec<T> codec, Subscriber<? super T> subscriber) throws IOException {
+            this.codec = codec;
+            this.subscriber = subscriber;
+            this.channel = SocketChannel.open(address);
+            channel.socket().setTcpNoDelay(true);
+            channel.configureBlocking(false);
+            this.selector = Selector.open();
+            this.key = channel.register(selector, SelectionKey.OP_READ);
+            requestBuffer.flip();
+        }
+
+        void start() {
+            subscriber.add(Subscriptions.create(this::close));
+            Thread loop = new Thread(this::run, "remote-observable-" + channel.socket().getLocalPort());
+            loop.setDaemon(true);
+            loop.start();
+            subscriber.setProducer(n -> {
+                if (n <= 0) return;
+                addRequested(n);
+                selector.wakeup();
+            });
+        }
+
+        private void addRequested(long n) {
+            long current, next;
+            do {
+                current = requested.get();
+                next = current + n < 0 ? Long.MAX_VALUE : current + n;
+            } while (!requested.compareAndSet(current, next));
+        }
+
+        private void delivered() {
+            granted--;
+            long current;
+            do {
+                current = requested.get();
+                if (current == Long.MAX_VALUE) return;
+            } while (!requested.compareAndSet(current, current - 1));
+        }
+
+        private void run() {
+            try {
+                while (!closed) {
+                    selector.select();
+                    selector.selectedKeys().clear();
+                    if (key.isValid() && key.isReadable() && !read()) return;
+                    sendCredit();
+                }
+            } catch (IOException e) {
+                if (!closed) subscriber.onError(e);
+            } finally {
+                closed = true;
+                try {
+                    selector.close();
+                    channel.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+
+        // Tops the credit up to whatever is outstanding downstream, but never past a window.  Unless that's all that
+        // is outstanding, wait until half the window has been used so the credit goes out in batches
+        private void sendCredit() throws IOException {
+            if (!requestBuffer.hasRemaining()) {
+                long wanted = Math.min(requested.get(), WINDOW);
+                long n = wanted - granted;
+                if (n <= 0 || (wanted == WINDOW && granted > WINDOW / 2)) return;
+                granted += n;
+                requestBuffer.clear();
+                Frames.writeRequest(requestBuffer, n);
+                requestBuffer.flip();
+            }
+            channel.write(requestBuffer);
+            key.interestOps(requestBuffer.hasRemaining() ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+        }
+
+        // Returns false once the stream has terminated
+        private boolean read() throws IOException {
+            int read = channel.read(readBuffer);
+            readBuffer.flip();
+            try {
+                while (!closed && Frames.hasFrame(readBuffer)) {
+                    int length = readBuffer.getInt();
+                    byte type = readBuffer.get();
+                    switch (type) {
+                        case Frames.NEXT:
+                            if (granted == 0) throw new IOException("Received more events than were asked for");
+                            delivered();
+                            subscriber.onNext(codec.decode(readBuffer));
+                            break;
+                        case Frames.COMPLETED:
+                            subscriber.onCompleted();
+                            return false;
+                        case Frames.ERROR:
+                            subscriber.onError(new RuntimeException("Remote stream failed: " + Frames.readError(readBuffer, length - 1)));
+                            return false;
+                        default:
+                            throw new IOException("Unexpected frame type: " + type);
+                    }
+                }
+                if (!Frames.hasValidLength(readBuffer)) throw new IOException("Bad frame length: " + readBuffer.getInt(readBuffer.position()));
+            } finally {
+                readBuffer.compact();
+            }
+            if (read < 0) {
+                subscriber.onError(new EOFException("Connection closed before the stream terminated"));
+                return false;
+            }
+            return true;
+        }
+
+        // Called on unsubscribe, from any thread - the event loop does the actual closing
+        private void close() {
+            closed = true;
+            selector.wakeup();
+        }
+    }
+}
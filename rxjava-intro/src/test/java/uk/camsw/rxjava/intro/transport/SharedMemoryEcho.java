@@ -0,0 +1,23 @@
+package uk.camsw.rxjava.intro.transport;
+
+import java.nio.file.Paths;
+import java.util.concurrent.CountDownLatch;
+
+// Runs in a separate JVM for the cross-process latency example: everything read from the first ring is published,
+// unchanged, to the second.  Prints READY once it is listening
+//
+//   SharedMemoryEcho <ping file> <pong file> <wait strategy>
+public class SharedMemoryEcho {
+
+    public static void main(String[] args) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        SharedMemoryPublisher.<Long>builder()
+                .withSource(SharedMemoryObservable.open(Paths.get(args[0]), Codec.longs(), WaitStrategy.valueOf(args[2]), LappedReaderPolicy.ERROR)
+                        .doOnTerminate(done::countDown))
+                .withCodec(Codec.longs())
+                .withPath(Paths.get(args[1]))
+                .build();
+        System.out.println("READY");
+        done.await();
+    }
+}
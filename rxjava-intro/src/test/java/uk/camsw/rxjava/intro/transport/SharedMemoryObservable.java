@@ -0,0 +1,139 @@
+package uk.camsw.rxjava.intro.transport;
+
+import rx.Observable;
+import rx.Subscriber;
+import rx.functions.Action1;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLong;
+
+// The reading end of a SharedMemoryPublisher.  Every subscription gets its own cursor and its own polling thread,
+// starting from the next event published after it subscribes.  Readers only poll while they have outstanding
+// requests, but the writer doesn't wait for them - so a reader that falls too far behind is lapped
+public class SharedMemoryObservable {
+
+    public static <T> Observable<T> open(Path path, Codec<T> codec) {
+        return open(path, codec, WaitStrategy.BACKOFF, LappedReaderPolicy.ERROR);
+    }
+
+    public static <T> Observable<T> open(Path path, Codec<T> codec, WaitStrategy waitStrategy, LappedReaderPolicy lappedReaderPolicy) {
+        return open(path, codec, waitStrategy, lappedReaderPolicy, dropped -> {
+        });
+    }
+
+    // onDropped is told (on the reader's thread) how many events were skipped each time a DROP reader is lapped
+    public static <T> Observable<T> open(Path path, Codec<T> codec, WaitStrategy waitStrategy, LappedReaderPolicy lappedReaderPolicy,
+                                         Action1<Long> onDropped) {
+        return Observable.create(subscriber -> {
+            SharedMemoryRing ring = SharedMemoryRing.open(path);
+            AtomicLong requested = new AtomicLong();
+            Reader<T> reader = new Reader<>(ring, codec, subscriber, requested, waitStrategy, lappedReaderPolicy, onDropped);
+            Thread thread = new Thread(reader, "shared-memory-reader-" + path.getFileName());
+            thread.setDaemon(true);
+            thread.start();
+            subscriber.setProducer(n -> {
+                if (n <= 0) return;
+                long current, next;
+                do {
+                    current = requested.get();
+                    next = current + n < 0 ? Long.MAX_VALUE : current + n;
+                } while (!requested.compareAndSet(current, next));
+            });
+        });
+    }
+
+    private static class Reader<T> implements Runnable {
+
+        private final SharedMemoryRing ring;
+        private final Codec<T> codec;
+        private final Subscriber<? super T> subscriber;
+        private final AtomicLong requested;
+        private final WaitStrategy waitStrategy;
+        private final LappedReaderPolicy lappedReaderPolicy;
+        private final Action1<Long> onDropped;
+        private long sequence;
+
+        Reader(SharedMemoryRing ring, Codec<T> codec, Subscriber<? super T> subscriber, AtomicLong requested,
+               WaitStrategy waitStrategy, LappedReaderPolicy lappedReaderPolicy, Action1<Long> onDropped) {
+            this.ring = ring;
+            this.codec = codec;
+            this.subscriber = subscriber;
+            this.requested = requested;
+            this.waitStrategy = waitStrategy;
+            this.lappedReaderPolicy = lappedReaderPolicy;
+            this.onDropped = onDropped;
+            this.sequence = ring.published();
+        }
+
+        @Override
+        public void run() {
+            int idleCount = 0;
+            while (!subscriber.isUnsubscribed()) {
+                if (!poll()) {
+                    waitStrategy.idle(idleCount++);
+                } else {
+                    idleCount = 0;
+                }
+            }
+        }
+
+        // Returns true if an event was delivered (or skipped over)
+        private boolean poll() {
+            long published = ring.published();
+            if (sequence >= published) return false;
+            // Terminal events don't need to be requested, values do
+            if (requested.get() == 0 && ring.lengthAt(sequence) >= 0) return false;
+            if (published - sequence > ring.capacity() || !tryRead()) {
+                lapped(published);
+                return !subscriber.isUnsubscribed();
+            }
+            return true;
+        }
+
+        // Copies the slot out under the seqlock, returning false if the writer overwrote it while we were reading
+        private boolean tryRead() {
+            if (ring.sequenceAt(sequence) != sequence) return false;
+            int length = ring.lengthAt(sequence);
+            ByteBuffer payload = ring.payloadAt(sequence);
+            T value = null;
+            String error = null;
+            if (length == SharedMemoryRing.ERROR) {
+                byte[] message = new byte[Math.min(Math.max(payload.getInt(), 0), payload.remaining())];
+                payload.get(message);
+                error = new String(message, StandardCharsets.UTF_8);
+            } else if (length != SharedMemoryRing.COMPLETED) {
+                value = codec.decode(payload);
+            }
+            ring.loadFence();
+            if (ring.sequenceAt(sequence) != sequence) return false;
+
+            sequence++;
+            if (length == SharedMemoryRing.COMPLETED) {
+                subscriber.onCompleted();
+                subscriber.unsubscribe();
+            } else if (error != null) {
+                subscriber.onError(new RuntimeException("Shared memory stream failed: " + error));
+                subscriber.unsubscribe();
+            } else {
+                if (requested.get() != Long.MAX_VALUE) requested.decrementAndGet();
+                subscriber.onNext(value);
+            }
+            return true;
+        }
+
+        private void lapped(long published) {
+            if (lappedReaderPolicy == LappedReaderPolicy.ERROR) {
+                subscriber.onError(new LappedReaderException(sequence, published, ring.capacity()));
+                subscriber.unsubscribe();
+                return;
+            }
+            // Jump to the oldest slot the writer can't be halfway through overwriting
+            long oldest = ring.published() - ring.capacity() + 1;
+            long dropped = oldest - sequence;
+            sequence = oldest;
+            onDropped.call(dropped);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package uk.camsw.rxjava.intro.transport;
+
+import rx.Observable;
+import rx.Subscriber;
+import rx.Subscription;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+// Writes an observable into a memory-mapped ring buffer that readers in other processes can poll
+// (see SharedMemoryObservable).  There is exactly one writer per ring and it never waits for readers - a reader
+// that falls a whole ring behind has been lapped
+public class SharedMemoryPublisher<T> implements Subscription {
+
+    private final Subscription subscription;
+
+    public SharedMemoryPublisher(Builder<T> builder) {
+        SharedMemoryRing ring = SharedMemoryRing.create(builder.path, builder.capacity, builder.slotSize);
+        Codec<T> codec = builder.codec;
+        if (codec.maxEncodedSize() > ring.maxPayload()) {
+            throw new IllegalArgumentException("Slot size " + builder.slotSize + " is too small for the codec");
+        }
+
+        this.subscription = builder.source.subscribe(new Subscriber<T>() {
+            long sequence;
+
+            @Override
+            public void onNext(T t) {
+                ByteBuffer payload = ring.beginWrite(sequence);
+                int start = payload.position();
+                codec.encode(t, payload);
+                ring.endWrite(sequence++, payload.position() - start);
+            }
+
+            @Override
+            public void onError(Throwable e) {
+                ByteBuffer payload = ring.beginWrite(sequence);
+                byte[] message = String.valueOf(e).getBytes(StandardCharsets.UTF_8);
+                int length = Math.min(message.length, payload.remaining() - Integer.BYTES);
+                payload.putInt(length).put(message, 0, length);
+                ring.endWrite(sequence++, SharedMemoryRing.ERROR);
+            }
+
+            @Override
+            public void onCompleted() {
+                ring.beginWrite(sequence);
+                ring.endWrite(sequence++, SharedMemoryRing.COMPLETED);
+            }
+        });
+    }
+
+    @Override
+    public void unsubscribe() {
+        subscription.unsubscribe();
+    }
+
+    @Override
+    public boolean isUnsubscribed() {
+        return subscription.isUnsubscribed();
+    }
+
+    public static <T> Builder<T> builder() {
+        return new Builder<>();
+    }
+
+    public static class Builder<T> {
+        Observable<T> source;
+        Codec<T> codec;
+        Path path;
+        int capacity = 64 * 1024;
+        int slotSize = 64;
+
+        public SharedMemoryPublisher<T> build() {
+            return new SharedMemoryPublisher<>(this);
+        }
+
+        public Builder<T> withSource(Observable<T> source) {
+            this.source = source;
+            return this;
+        }
+
+        public Builder<T> withCodec(Codec<T> codec) {
+            this.codec = codec;
+            return this;
+        }
+
+        public Builder<T> withPath(Path path) {
+            this.path = path;
+            return this;
+        }
+
+        public Builder<T> withCapacity(int capacity) {
+            this.capacity = capacity;
+            return this;
+        }
+
+        public Builder<T> withSlotSize(int slotSize) {
+            this.slotSize = slotSize;
+            return this;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package uk.camsw.rxjava.intro.transport;
+
+import sun.misc.Unsafe;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+// The memory-mapped file shared by one SharedMemoryPublisher and any number of SharedMemoryObservable readers.
+//
+//   [0]    int  magic
+//   [4]    int  capacity (slots)
+//   [8]    int  slot size (bytes)
+//   [64]   long published - count of slots written so far, on its own cache line
+//   [128]  slots, each [long sequence][int length][payload]
+//
+// A slot's sequence doubles as a seqlock: the writer marks it WRITING, fills in the payload, then stores the sequence
+// being published.  A reader that sees the same sequence before and after copying the payload knows it wasn't lapped
+// mid-read.  Java 8 has no VarHandles, so the ordering guarantees come from Unsafe
+final class SharedMemoryRing {
+
+    static final int MAGIC = 0x52784d4d;
+    static final long WRITING = -1;
+    static final int COMPLETED = -1;
+    static final int ERROR = -2;
+
+    private static final int CAPACITY_OFFSET = 4;
+    private static final int SLOT_SIZE_OFFSET = 8;
+    private static final int PUBLISHED_OFFSET = 64;
+    private static final int SLOTS_OFFSET = 128;
+    private static final int SLOT_HEADER = Long.BYTES + Integer.BYTES;
+
+    private static final Unsafe UNSAFE;
+    private static final long ADDRESS_OFFSET;
+
+    static {
+        try {
+            Field field = Unsafe.class.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            UNSAFE = (Unsafe) field.get(null);
+            ADDRESS_OFFSET = UNSAFE.objectFieldOffset(Buffer.class.getDeclaredField("address"));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final MappedByteBuffer buffer;                      // Held on to so the mapping outlives its address
+    private final ByteBuffer payloads;
+    private final long address;
+    private final int capacity;
+    private final int slotSize;
+
+    private SharedMemoryRing(MappedByteBuffer buffer) {
+        this.buffer = buffer;
+        this.address = UNSAFE.getLong(buffer, ADDRESS_OFFSET);
+        this.capacity = buffer.getInt(CAPACITY_OFFSET);
+        this.slotSize = buffer.getInt(SLOT_SIZE_OFFSET);
+        this.payloads = buffer.duplicate().order(ByteOrder.nativeOrder());
+    }
+
+    // The ring is built in a new file alongside the path, then renamed over it.  Truncating an existing ring in place
+    // would pull the pages out from under anyone who has it mapped (SIGBUS), or quietly reset 'published' so they
+    // stall.  Readers of a replaced ring keep the old, now unlinked, file and see nothing more on it - they have to
+    // open the path again to follow the new publisher.  Readers that open the path only ever see a finished ring
+    static SharedMemoryRing create(Path path, int capacity, int slotSize) {
+        int alignedSlotSize = (slotSize + 7) & ~7;
+        Path absolute = path.toAbsolutePath();
+        Path fresh;
+        try {
+            fresh = Files.createTempFile(absolute.getParent(), absolute.getFileName() + ".", ".tmp");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        try {
+            MappedByteBuffer buffer = map(fresh, SLOTS_OFFSET + (long) capacity * alignedSlotSize);
+            buffer.putInt(CAPACITY_OFFSET, capacity);
+            buffer.putInt(SLOT_SIZE_OFFSET, alignedSlotSize);
+            SharedMemoryRing ring = new SharedMemoryRing(buffer);
+            for (int i = 0; i < capacity; i++) {
+                UNSAFE.putLong(ring.slotAddress(i), WRITING);
+            }
+            UNSAFE.putLongVolatile(null, ring.address + PUBLISHED_OFFSET, 0);
+            UNSAFE.putIntVolatile(null, ring.address, MAGIC);
+            Files.move(fresh, absolute, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            return ring;                                         // Readers may attach from here on
+        } catch (IOException e) {
+            deleteQuietly(fresh);
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            deleteQuietly(fresh);
+            throw e;
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) {
+        }
+    }
+
+    static SharedMemoryRing open(Path path) {
+        MappedByteBuffer buffer = map(path, 0);
+        if (UNSAFE.getIntVolatile(null, UNSAFE.getLong(buffer, ADDRESS_OFFSET)) != MAGIC) {
+            throw new IllegalStateException("Not an initialised ring buffer: " + path);
+        }
+        return new SharedMemoryRing(buffer);
+    }
+
+    private static MappedByteBuffer map(Path path, long size, StandardOpenOption... options) {
+        StandardOpenOption[] all = new StandardOpenOption[options.length + 2];
+        all[0] = StandardOpenOption.READ;
+        all[1] = StandardOpenOption.WRITE;
+        System.arraycopy(options, 0, all, 2, options.length);
+        try (FileChannel channel = FileChannel.open(path, all)) {
+            long length = size == 0 ? channel.size() : size;
+            return (MappedByteBuffer) channel.map(FileChannel.MapMode.READ_WRITE, 0, length).order(ByteOrder.nativeOrder());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    int maxPayload() {
+        return slotSize - SLOT_HEADER;
+    }
+
+    long published() {
+        return UNSAFE.getLongVolatile(null, address + PUBLISHED_OFFSET);
+    }
+
+    // Writer side.  Returns the payload buffer positioned at the start of the slot's payload
+    ByteBuffer beginWrite(long sequence) {
+        long slot = slotAddress(index(sequence));
+        UNSAFE.putLongVolatile(null, slot, WRITING);
+        return payloadAt(sequence);
+    }
+
+    void endWrite(long sequence, int length) {
+        long slot = slotAddress(index(sequence));
+        UNSAFE.putInt(slot + Long.BYTES, length);
+        UNSAFE.putOrderedLong(null, slot, sequence);
+        UNSAFE.putOrderedLong(null, address + PUBLISHED_OFFSET, sequence + 1);
+    }
+
+    // Reader side
+    long sequenceAt(long sequence) {
+        return UNSAFE.getLongVolatile(null, slotAddress(index(sequence)));
+    }
+
+    int lengthAt(long sequence) {
+        return UNSAFE.getInt(slotAddress(index(sequence)) + Long.BYTES);
+    }
+
+    ByteBuffer payloadAt(long sequence) {
+        int start = SLOTS_OFFSET + index(sequence) * slotSize + SLOT_HEADER;
+        payloads.limit(start + maxPayload()).position(start);
+        return payloads;
+    }
+
+    // Makes sure the payload has been fully read before the seqlock is checked again
+    void loadFence() {
+        UNSAFE.loadFence();
+    }
+
+    private int index(long sequence) {
+        return (int) (sequence % capacity);
+    }
+
+    private long slotAddress(int index) {
+        return address + SLOTS_OFFSET + (long) index * slotSize;
+    }
+}
@@ -0,0 +1,36 @@
+package uk.camsw.rxjava.intro.transport;
+
+import java.util.concurrent.locks.LockSupport;
+
+// What a polling reader does while there is nothing to read.  Lower latency costs more CPU
+public enum WaitStrategy {
+
+    // Burns a core, but reacts within nanoseconds
+    BUSY_SPIN {
+        @Override
+        void idle(int idleCount) {
+        }
+    },
+
+    YIELD {
+        @Override
+        void idle(int idleCount) {
+            Thread.yield();
+        }
+    },
+
+    // Spins, then yields, then parks for progressively longer (up to a millisecond)
+    BACKOFF {
+        @Override
+        void idle(int idleCount) {
+            if (idleCount < 100) return;
+            if (idleCount < 200) {
+                Thread.yield();
+                return;
+            }
+            LockSupport.parkNanos(Math.min(1_000_000L, 1000L << Math.min(idleCount - 200, 10)));
+        }
+    };
+
+    abstract void idle(int idleCount);
+}
@@ -0,0 +1,310 @@
+package uk.camsw.rxjava.intro.transport;
+
+import rx.Observable;
+import rx.Subscriber;
+import rx.Subscription;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Publishes an observable to remote subscribers (see RemoteObservable).  Each connection gets its own subscription to
+// the source, requesting only as many events as the remote side has granted credit for.
+// Everything socket related happens on a single event loop thread: events are queued by whichever thread emits
+// them, then encoded in batches into pooled direct buffers and written with a single gathering write
+public class WireServer<T> implements Subscription {
+
+    private static final Object COMPLETED = new Object();
+
+    private final Observable<T> source;
+    private final Codec<T> codec;
+    private final BufferPool pool;
+    private final Selector selector;
+    private final ServerSocketChannel server;
+    private final List<Connection> connections = new ArrayList<>();
+    private final AtomicBoolean wakeupPending = new AtomicBoolean();
+    private volatile boolean stopped;
+
+    public WireServer(Builder<T> builder) {
+        this.source = builder.source;
+        this.codec = builder.codec;
+        this.pool = new BufferPool(builder.bufferSize, builder.maxPooledBuffers);
+        try {
+            this.selector = Selector.open();
+            this.server = ServerSocketChannel.open();
+            server.bind(builder.address);
+            server.configureBlocking(false);
+            server.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        Thread loop = new Thread(this::run, "wire-server-" + localAddress().getPort());
+        loop.setDaemon(true);
+        loop.start();
+    }
+
+    public InetSocketAddress localAddress() {
+        try {
+            return (InetSocketAddress) server.getLocalAddress();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void run() {
+        try {
+            while (!stopped) {
+                selector.select();
+                wakeupPending.set(false);
+                for (SelectionKey key : selector.selectedKeys()) {
+                    if (!key.isValid()) continue;
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    @SuppressWarnings("unchecked")
+                    Connection connection = (Connection) key.attachment();
+                    if (key.isReadable()) connection.read();
+                    if (key.isValid() && key.isWritable()) connection.flush();
+                }
+                selector.selectedKeys().clear();
+                for (Connection connection : new ArrayList<>(connections)) {
+                    connection.drain();
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Wire server failed: " + e);
+        } finally {
+            new ArrayList<>(connections).forEach(Connection::close);
+            close(server);
+            close(selector);
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel == null) return;
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        Connection connection = new Connection(channel);
+        connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+        connections.add(connection);
+        source.subscribe(connection);
+    }
+
+    private void wakeup() {
+        if (wakeupPending.compareAndSet(false, true)) selector.wakeup();
+    }
+
+    @Override
+    public void unsubscribe() {
+        stopped = true;
+        selector.wakeup();
+    }
+
+    @Override
+    public boolean isUnsubscribed() {
+        return stopped;
+    }
+
+    private static void close(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private class Connection extends Subscriber<T> {
+
+        private final SocketChannel channel;
+        private final Queue<Object> events = new ConcurrentLinkedQueue<>();
+        private final ByteBuffer readBuffer = ByteBuffer.allocate(Frames.HEADER + Long.BYTES);
+        private final ArrayDeque<ByteBuffer> pending = new ArrayDeque<>();
+        private SelectionKey key;
+        private boolean terminated;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public void onStart() {
+            request(0);                                         // Nothing until the remote side asks
+        }
+
+        @Override
+        public void onNext(T t) {
+            events.offer(t);
+            wakeup();
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            events.offer(new Failure(e));
+            wakeup();
+        }
+
+        @Override
+        public void onCompleted() {
+            events.offer(COMPLETED);
+            wakeup();
+        }
+
+        void read() {
+            try {
+                if (channel.read(readBuffer) < 0) {
+                    close();
+                    return;
+                }
+                readBuffer.flip();
+                while (Frames.hasFrame(readBuffer)) {
+                    int length = readBuffer.getInt();
+                    if (readBuffer.get() != Frames.REQUEST) {
+                        readBuffer.position(readBuffer.position() + length - 1);   // Nothing else for us, skip it
+                        continue;
+                    }
+                    long n = length == 1 + Long.BYTES ? readBuffer.getLong() : 0;
+                    if (n <= 0) {
+                        close();                                // Malformed, or a request Rx would reject
+                        return;
+                    }
+                    request(n);
+                }
+                // Only REQUEST frames are expected, and they're small.  Anything that can't fit would never arrive in full
+                if (!Frames.hasValidLength(readBuffer)) {
+                    close();
+                    return;
+                }
+                readBuffer.compact();
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        void drain() {
+            // Nothing more is encoded until the socket has taken what's already been, otherwise a client that's slow
+            // to read would have us taking buffer after buffer from the pool
+            if (terminated || !pending.isEmpty()) return;
+            int frameSize = Frames.HEADER + Math.max(codec.maxEncodedSize(), Frames.MAX_ERROR_MESSAGE);
+            ByteBuffer buffer = null;
+            Object event;
+            while ((event = events.poll()) != null) {
+                if (buffer == null || buffer.remaining() < frameSize) {
+                    if (buffer != null) pending.add((ByteBuffer) buffer.flip());
+                    buffer = pool.acquire();
+                }
+                if (event == COMPLETED) {
+                    Frames.writeCompleted(buffer);
+                    terminated = true;
+                    break;
+                } else if (event instanceof Failure) {
+                    Frames.writeError(buffer, ((Failure) event).error);
+                    terminated = true;
+                    break;
+                }
+                int start = buffer.position();
+                try {
+                    Frames.writeNext(buffer, codec, (T) event);
+                } catch (RuntimeException e) {
+                    // A value the codec can't handle fails this connection only.  The half written frame is
+                    // discarded and replaced with an error
+                    buffer.position(start);
+                    Frames.writeError(buffer, e);
+                    terminated = true;
+                    unsubscribe();
+                    break;
+                }
+            }
+            if (buffer != null) pending.add((ByteBuffer) buffer.flip());
+            flush();
+        }
+
+        void flush() {
+            try {
+                if (!pending.isEmpty()) {
+                    channel.write(pending.toArray(new ByteBuffer[pending.size()]));
+                    while (!pending.isEmpty() && !pending.peek().hasRemaining()) {
+                        pool.release(pending.poll());
+                    }
+                }
+                if (pending.isEmpty() && terminated) {
+                    close();
+                } else if (key.isValid()) {
+                    key.interestOps(pending.isEmpty() ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                }
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        void close() {
+            unsubscribe();
+            connections.remove(this);
+            pending.forEach(pool::release);
+            pending.clear();
+            WireServer.close(channel);
+        }
+    }
+
+    private static class Failure {
+        final Throwable error;
+
+        Failure(Throwable error) {
+            this.error = error;
+        }
+    }
+
+    public static <T> Builder<T> builder() {
+        return new Builder<>();
+    }
+
+    public static class Builder<T> {
+        Observable<T> source;
+        Codec<T> codec;
+        InetSocketAddress address = new InetSocketAddress("localhost", 0);
+        int bufferSize = 64 * 1024;
+        int maxPooledBuffers = 16;
+
+        public WireServer<T> build() {
+            return new WireServer<>(this);
+        }
+
+        public Builder<T> withSource(Observable<T> source) {
+            this.source = source;
+            return this;
+        }
+
+        public Builder<T> withCodec(Codec<T> codec) {
+            this.codec = codec;
+            return this;
+        }
+
+        public Builder<T> withAddress(InetSocketAddress address) {
+            this.address = address;
+            return this;
+        }
+
+        public Builder<T> withBufferSize(int bufferSize) {
+            this.bufferSize = bufferSize;
+            return this;
+        }
+
+        public Builder<T> withMaxPooledBuffers(int maxPooledBuffers) {
+            this.maxPooledBuffers = maxPooledBuffers;
+            return this;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package uk.camsw.rxjava.intro.window;
+
+// Running count/sum/min/max for windows that are only ever appended to and then reset (tumbling, session)
+class Accumulator {
+
+    private long count;
+    private double sum;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    void add(double value) {
+        count++;
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    boolean isEmpty() {
+        return count == 0;
+    }
+
+    Aggregate snapshot() {
+        return count == 0 ? Aggregate.EMPTY : new Aggregate(count, sum, min, max);
+    }
+
+    void reset() {
+        count = 0;
+        sum = 0;
+        min = Double.POSITIVE_INFINITY;
+        max = Double.NEGATIVE_INFINITY;
+    }
+}
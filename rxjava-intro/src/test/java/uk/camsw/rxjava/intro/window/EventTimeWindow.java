@@ -0,0 +1,38 @@
+package uk.camsw.rxjava.intro.window;
+
+public final class EventTimeWindow {
+
+    private final long start;
+    private final long end;
+    private final Aggregate aggregate;
+    private final boolean update;
+
+    EventTimeWindow(long start, long end, Aggregate aggregate, boolean update) {
+        this.start = start;
+        this.end = end;
+        this.aggregate = aggregate;
+        this.update = update;
+    }
+
+    public long start() {
+        return start;
+    }
+
+    public long end() {
+        return end;
+    }
+
+    public Aggregate aggregate() {
+        return aggregate;
+    }
+
+    // True when this window had already fired and is being re-emitted because a late (but allowed) event arrived
+    public boolean isUpdate() {
+        return update;
+    }
+
+    @Override
+    public String toString() {
+        return "EventTimeWindow{[" + start + ", " + end + ")" + (update ? " (update)" : "") + ", " + aggregate + "}";
+    }
+}
@@ -0,0 +1,155 @@
+package uk.camsw.rxjava.intro.window;
+
+import rx.Observable;
+import rx.Subscriber;
+import rx.functions.Action1;
+import rx.schedulers.Timestamped;
+import rx.subjects.PublishSubject;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+// Tumbling windows keyed on the time an event was produced rather than the time it arrives.
+// Progress is tracked with a watermark (the highest event time seen, less the expected out-of-orderness): a window
+// fires once the watermark passes its end, is re-fired for late events up to the allowed lateness, and anything later
+// still is routed to the late events side output rather than being silently folded into the wrong window.
+// Each subscription gets a side output of its own, which terminates along with the source
+public class EventTimeWindows<T extends Number> implements Observable.Transformer<Timestamped<T>, EventTimeWindow> {
+
+    private final long size;
+    private final long maxOutOfOrderness;
+    private final long allowedLateness;
+    private final Action1<Observable<Timestamped<T>>> lateEvents;
+
+    public EventTimeWindows(Builder<T> builder) {
+        this.size = builder.size;
+        this.maxOutOfOrderness = builder.maxOutOfOrderness;
+        this.allowedLateness = builder.allowedLateness;
+        this.lateEvents = builder.lateEvents;
+    }
+
+    @Override
+    public Observable<EventTimeWindow> call(Observable<Timestamped<T>> source) {
+        return source.lift(child -> {
+            PublishSubject<Timestamped<T>> late = PublishSubject.create();
+            lateEvents.call(late);
+            WindowSubscriber subscriber = new WindowSubscriber(child, late);
+            child.add(subscriber);
+            return subscriber;
+        });
+    }
+
+    // Like buffer(time), windows are emitted as they fire rather than on request, so the source is requested unbounded
+    private class WindowSubscriber extends Subscriber<Timestamped<T>> {
+        private final Subscriber<? super EventTimeWindow> child;
+        private final PublishSubject<Timestamped<T>> late;
+        private final TreeMap<Long, Pane> panes = new TreeMap<>();
+        private long watermark = Long.MIN_VALUE;
+
+        WindowSubscriber(Subscriber<? super EventTimeWindow> child, PublishSubject<Timestamped<T>> late) {
+            this.child = child;
+            this.late = late;
+        }
+
+        @Override
+        public void onNext(Timestamped<T> event) {
+            long time = event.getTimestampMillis();
+            long start = Math.floorDiv(time, size) * size;
+            if (start + size + allowedLateness <= watermark) {
+                late.onNext(event);
+                return;
+            }
+
+            Pane pane = panes.get(start);
+            if (pane == null) {
+                pane = new Pane();
+                panes.put(start, pane);
+            }
+            pane.accumulator.add(event.getValue().doubleValue());
+            if (pane.fired) child.onNext(new EventTimeWindow(start, start + size, pane.accumulator.snapshot(), true));
+
+            watermark = Math.max(watermark, time - maxOutOfOrderness);
+            advance();
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            late.onError(e);
+            child.onError(e);
+        }
+
+        // Source completed, so no more events can arrive - whatever is still pending fires now
+        @Override
+        public void onCompleted() {
+            for (Map.Entry<Long, Pane> entry : panes.entrySet()) {
+                Pane pane = entry.getValue();
+                if (!pane.fired) {
+                    child.onNext(new EventTimeWindow(entry.getKey(), entry.getKey() + size, pane.accumulator.snapshot(), false));
+                }
+            }
+            panes.clear();
+            late.onCompleted();
+            child.onCompleted();
+        }
+
+        private void advance() {
+            Iterator<Map.Entry<Long, Pane>> it = panes.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<Long, Pane> entry = it.next();
+                long end = entry.getKey() + size;
+                if (end > watermark) break;
+                Pane pane = entry.getValue();
+                if (!pane.fired) {
+                    pane.fired = true;
+                    child.onNext(new EventTimeWindow(entry.getKey(), end, pane.accumulator.snapshot(), false));
+                }
+                if (end + allowedLateness <= watermark) it.remove();
+            }
+        }
+    }
+
+    public static <T extends Number> Builder<T> tumbling(long size, TimeUnit unit) {
+        return new Builder<T>().withSize(size, unit);
+    }
+
+    private static class Pane {
+        final Accumulator accumulator = new Accumulator();
+        boolean fired;
+    }
+
+    public static class Builder<T extends Number> {
+        long size;
+        long maxOutOfOrderness = 0;
+        long allowedLateness = 0;
+        Action1<Observable<Timestamped<T>>> lateEvents = late -> {
+        };
+
+        public EventTimeWindows<T> build() {
+            return new EventTimeWindows<>(this);
+        }
+
+        public Builder<T> withSize(long size, TimeUnit unit) {
+            this.size = unit.toMillis(size);
+            return this;
+        }
+
+        public Builder<T> withMaxOutOfOrderness(long maxOutOfOrderness, TimeUnit unit) {
+            this.maxOutOfOrderness = unit.toMillis(maxOutOfOrderness);
+            return this;
+        }
+
+        public Builder<T> withAllowedLateness(long allowedLateness, TimeUnit unit) {
+            this.allowedLateness = unit.toMillis(allowedLateness);
+            return this;
+        }
+
+        // Called on each subscription, before any events flow, with that subscription's late events.  Without one,
+        // late events are dropped
+        public Builder<T> withLateEvents(Action1<Observable<Timestamped<T>>> lateEvents) {
+            this.lateEvents = lateEvents;
+            return this;
+        }
+    }
+}
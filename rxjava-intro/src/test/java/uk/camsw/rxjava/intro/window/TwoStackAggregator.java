@@ -0,0 +1,91 @@
+package uk.camsw.rxjava.intro.window;
+
+import java.util.Arrays;
+
+// A FIFO of timestamped values that can report count/sum/min/max of its contents in O(1) amortized time.
+// New values are pushed onto the 'back' stack, which keeps a single running aggregate.  Evictions pop from the
+// 'front' stack, where every slot holds the aggregate of itself and everything newer below it.  When the front runs
+// dry the back is flipped across in one go, so each value is touched a constant number of times overall
+class TwoStackAggregator {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private double[] backValues = new double[INITIAL_CAPACITY];
+    private long[] backTimes = new long[INITIAL_CAPACITY];
+    private int backSize;
+    private double backSum;
+    private double backMin = Double.POSITIVE_INFINITY;
+    private double backMax = Double.NEGATIVE_INFINITY;
+
+    private long[] frontTimes = new long[INITIAL_CAPACITY];
+    private double[] frontSum = new double[INITIAL_CAPACITY];
+    private double[] frontMin = new double[INITIAL_CAPACITY];
+    private double[] frontMax = new double[INITIAL_CAPACITY];
+    private int frontSize;
+
+    void push(long time, double value) {
+        if (backSize == backValues.length) {
+            backValues = Arrays.copyOf(backValues, backSize * 2);
+            backTimes = Arrays.copyOf(backTimes, backSize * 2);
+        }
+        backValues[backSize] = value;
+        backTimes[backSize] = time;
+        backSize++;
+        backSum += value;
+        backMin = Math.min(backMin, value);
+        backMax = Math.max(backMax, value);
+    }
+
+    // Removes every value stamped at or before the cutoff
+    void evictUpTo(long cutoff) {
+        while (size() > 0) {
+            if (frontSize == 0) flip();
+            if (frontTimes[frontSize - 1] > cutoff) return;
+            frontSize--;
+        }
+    }
+
+    int size() {
+        return frontSize + backSize;
+    }
+
+    Aggregate aggregate() {
+        if (size() == 0) return Aggregate.EMPTY;
+        if (frontSize == 0) return new Aggregate(backSize, backSum, backMin, backMax);
+        int top = frontSize - 1;
+        return new Aggregate(
+                size(),
+                frontSum[top] + backSum,
+                Math.min(frontMin[top], backMin),
+                Math.max(frontMax[top], backMax));
+    }
+
+    private void flip() {
+        if (frontTimes.length < backSize) {
+            int capacity = backValues.length;
+            frontTimes = new long[capacity];
+            frontSum = new double[capacity];
+            frontMin = new double[capacity];
+            frontMax = new double[capacity];
+        }
+        // Newest goes to the bottom, so the oldest ends up on top ready to be evicted first
+        double sum = 0;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (int i = backSize - 1; i >= 0; i--) {
+            double value = backValues[i];
+            sum += value;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+            frontTimes[frontSize] = backTimes[i];
+            frontSum[frontSize] = sum;
+            frontMin[frontSize] = min;
+            frontMax[frontSize] = max;
+            frontSize++;
+        }
+        backSize = 0;
+        backSum = 0;
+        backMin = Double.POSITIVE_INFINITY;
+        backMax = Double.NEGATIVE_INFINITY;
+    }
+}
@@ -0,0 +1,161 @@
+package uk.camsw.rxjava.intro.window;
+
+import rx.Observable;
+import rx.Scheduler;
+import rx.Subscriber;
+import rx.subscriptions.SerialSubscription;
+
+import java.util.concurrent.TimeUnit;
+
+// Incremental alternatives to buffer(...).map(aggregate) - no lists are materialized, each event updates
+// primitive accumulators as it arrives and windows are closed by the scheduler, so virtual time works in tests
+public class Windows {
+
+    public static <T extends Number> Observable.Transformer<T, Aggregate> tumbling(long timespan, TimeUnit unit, Scheduler scheduler) {
+        return source -> Observable.create(subscriber -> {
+            Accumulator accumulator = new Accumulator();
+            Scheduler.Worker worker = scheduler.createWorker();
+            boolean[] done = {false};                                    // Guarded by accumulator
+            subscriber.add(worker);
+
+            worker.schedulePeriodically(() -> {
+                synchronized (accumulator) {
+                    if (done[0]) return;
+                    Aggregate aggregate = accumulator.snapshot();
+                    accumulator.reset();
+                    subscriber.onNext(aggregate);
+                }
+            }, timespan, timespan, unit);
+
+            subscriber.add(source.unsafeSubscribe(new Subscriber<T>() {
+                @Override
+                public void onNext(T n) {
+                    synchronized (accumulator) {
+                        accumulator.add(n.doubleValue());
+                    }
+                }
+
+                @Override
+                public void onError(Throwable e) {
+                    synchronized (accumulator) {
+                        done[0] = true;
+                        worker.unsubscribe();
+                        subscriber.onError(e);
+                    }
+                }
+
+                @Override
+                public void onCompleted() {
+                    synchronized (accumulator) {
+                        done[0] = true;
+                        worker.unsubscribe();
+                        subscriber.onNext(accumulator.snapshot());
+                        subscriber.onCompleted();
+                    }
+                }
+            }));
+        });
+    }
+
+    // Emits, every timeshift, the aggregate of events seen during the preceding timespan
+    public static <T extends Number> Observable.Transformer<T, Aggregate> sliding(long timespan, long timeshift, TimeUnit unit, Scheduler scheduler) {
+        long spanMillis = unit.toMillis(timespan);
+        return source -> Observable.create(subscriber -> {
+            TwoStackAggregator window = new TwoStackAggregator();
+            Scheduler.Worker worker = scheduler.createWorker();
+            boolean[] done = {false};                                    // Guarded by window
+            subscriber.add(worker);
+
+            worker.schedulePeriodically(() -> {
+                synchronized (window) {
+                    if (done[0]) return;
+                    window.evictUpTo(worker.now() - spanMillis);
+                    subscriber.onNext(window.aggregate());
+                }
+            }, timeshift, timeshift, unit);
+
+            subscriber.add(source.unsafeSubscribe(new Subscriber<T>() {
+                @Override
+                public void onNext(T n) {
+                    synchronized (window) {
+                        window.push(worker.now(), n.doubleValue());
+                    }
+                }
+
+                @Override
+                public void onError(Throwable e) {
+                    synchronized (window) {
+                        done[0] = true;
+                        worker.unsubscribe();
+                        subscriber.onError(e);
+                    }
+                }
+
+                @Override
+                public void onCompleted() {
+                    synchronized (window) {
+                        done[0] = true;
+                        long now = worker.now();
+                        worker.unsubscribe();
+                        window.evictUpTo(now - spanMillis);
+                        subscriber.onNext(window.aggregate());
+                        subscriber.onCompleted();
+                    }
+                }
+            }));
+        });
+    }
+
+    // A session stays open for as long as events keep arriving within the gap of one another
+    public static <T extends Number> Observable.Transformer<T, Aggregate> session(long gap, TimeUnit unit, Scheduler scheduler) {
+        return source -> Observable.create(subscriber -> {
+            Accumulator accumulator = new Accumulator();
+            Scheduler.Worker worker = scheduler.createWorker();
+            SerialSubscription timeout = new SerialSubscription();
+            subscriber.add(worker);
+            subscriber.add(timeout);
+
+            subscriber.add(source.unsafeSubscribe(new Subscriber<T>() {
+                // Bumped by every event.  A timer that fires (or is already waiting on the lock) after a later event
+                // has arrived belongs to a gap that never happened, so it leaves the session alone.  Likewise once
+                // the stream has terminated, as the final session has already gone out
+                private long generation;
+                private boolean done;
+
+                @Override
+                public void onNext(T n) {
+                    synchronized (accumulator) {
+                        accumulator.add(n.doubleValue());
+                        long scheduledFor = ++generation;
+                        timeout.set(worker.schedule(() -> {
+                            synchronized (accumulator) {
+                                if (done || generation != scheduledFor || accumulator.isEmpty()) return;
+                                subscriber.onNext(accumulator.snapshot());
+                                accumulator.reset();
+                            }
+                        }, gap, unit));
+                    }
+                }
+
+                @Override
+                public void onError(Throwable e) {
+                    synchronized (accumulator) {
+                        done = true;
+                        worker.unsubscribe();
+                        subscriber.onError(e);
+                    }
+                }
+
+                @Override
+                public void onCompleted() {
+                    synchronized (accumulator) {
+                        done = true;
+                        worker.unsubscribe();
+                        if (!accumulator.isEmpty()) subscriber.onNext(accumulator.snapshot());
+                        subscriber.onCompleted();
+                    }
+                }
+            }));
+        });
+    }
+}